@@ -3,273 +3,465 @@ package link.tothetracker.lib.encode;
 import link.tothetracker.lib.LibRuntimeException;
 import link.tothetracker.lib.encode.type.*;
 
-import java.io.ByteArrayInputStream;
-import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.TreeMap;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
+ * 把 b-encode 数据解码成 AbstractBeValue 树
+ *
+ * 不在 Java 栈上递归, 由 BeTreeBuilder 维护容器栈, 嵌套深度由 BeReader 限制
+ *
  * @author t3link
  */
 public class BeDecoder {
-    private final InputStream in;
-
-    // The last indicator read.
-    // Zero if unknown.
-    // '0'..'9' indicates a byte[].
-    // 'i' indicates an Number.
-    // 'l' indicates a List.
-    // 'd' indicates a Map.
-    // 'e' indicates end of Number, List or Map (only used internally).
-    // -1 indicates end of stream.
-    // Call getNextIndicator to get the current value (will never return zero).
-
-    private static final char FLAG_NUMBER = 'i';
-    private static final char FLAG_LIST = 'l';
-    private static final char FLAG_DICT = 'd';
-    private static final char FLAG_SPLIT = ':';
-    private static final char FLAG_END = 'e';
-
-    private static final char FLAG_NUMBER_NEGATIVE = '-';
-    private static final char FLAG_NUMBER_0 = '0';
-    private static final char FLAG_NUMBER_1 = '1';
-    private static final char FLAG_NUMBER_9 = '9';
-    private static final int NUMBER_0 = 0;
-    private static final int NUMBER_9 = 9;
-
-    private int indicator = 0;
+
+    private final BeReader reader;
+
+    private int maxDepth = BeReader.DEFAULT_MAX_DEPTH;
+
+    private int maxStringLength = BeLexer.DEFAULT_MAX_STRING_LENGTH;
+
+    /**
+     * 根节点是 dictionary 时, 是否延迟解码它的 dictionary / list 值
+     */
+    private boolean lazy;
+
+    /**
+     * 命中符号表的 key 复用表里的实例
+     */
+    private BeSymbolTable symbols;
 
     public BeDecoder(InputStream in) {
-        this.in = in;
+        this.reader = new BeReader(in);
+    }
+
+    /**
+     * 直接在数组上解码, 不经过 InputStream
+     *
+     * 解码出的 byte string 是 data 上的视图, 不拷贝: 在调用 getValue() 拷贝出私有数组之前,
+     * 修改 data (比如复用读取缓冲区) 会改变解码结果, 需要复用 data 时先调用 getValue()
+     */
+    public BeDecoder(byte[] data) {
+        this.reader = new BeReader(data);
+    }
+
+    /**
+     * 直接在 buffer 上解码, 从 buffer 当前的 position 读到 limit
+     *
+     * 和 byte[] 一样, 解码出的 byte string 是 buffer 上的视图
+     */
+    public BeDecoder(ByteBuffer buffer) {
+        this.reader = new BeReader(buffer);
     }
 
     public static AbstractBeValue decode(InputStream in) throws IOException {
         return new BeDecoder(in).decode();
     }
 
+    /**
+     * 解码出的 byte string 是 data 上的视图, 见 {@link #BeDecoder(byte[])}
+     */
     public static AbstractBeValue decode(byte[] data) throws IOException {
-        return BeDecoder.decode(new ByteArrayInputStream(data));
+        return new BeDecoder(data).decode();
+    }
+
+    public static AbstractBeValue decode(ByteBuffer buffer) throws IOException {
+        return new BeDecoder(buffer).decode();
     }
 
     /**
-     * Gets the next indicator and returns either null when the stream
-     * has ended or b-decodes the rest of the stream and returns the
-     * appropriate BEValue encoded object.
+     * 只解码指定路径上的值, 见 {@link #extract(String...)}
      */
-    private AbstractBeValue decode() throws IOException {
-        var begin = this.reacquireIndicator(false);
-        if (begin == -1) {
-            throw new LibRuntimeException("stream read: -1");
-        }
+    public static Map<String, List<AbstractBeValue>> extract(byte[] data, String... paths) throws IOException {
+        return new BeDecoder(data).extract(paths);
+    }
 
-        if (begin >= FLAG_NUMBER_0 && begin <= FLAG_NUMBER_9) {
-            return this.decodeBytes();
-        } else if (begin == FLAG_NUMBER) {
-            return this.decodeNumber();
-        } else if (begin == FLAG_LIST) {
-            return this.decodeList();
-        } else if (begin == FLAG_DICT) {
-            return this.decodeDictionary();
-        } else {
-            throw new LibRuntimeException("unknown indicator!");
-        }
+    public static Map<String, List<AbstractBeValue>> extract(ByteBuffer buffer, String... paths) throws IOException {
+        return new BeDecoder(buffer).extract(paths);
+    }
+
+    public static Map<String, List<AbstractBeValue>> extract(InputStream in, String... paths) throws IOException {
+        return new BeDecoder(in).extract(paths);
     }
 
     /**
-     * Returns the next b-encoded value on the stream and makes sure it is a byte array.
+     * 最大嵌套深度, 超过时抛出异常
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+        this.reader.setMaxDepth(maxDepth);
+    }
+
+    /**
+     * byte string 的最大长度, 超过时抛出异常
+     */
+    public void setMaxStringLength(int maxStringLength) {
+        this.maxStringLength = maxStringLength;
+        this.reader.setMaxStringLength(maxStringLength);
+    }
+
+    /**
+     * 延迟解码模式: 根 dictionary 的 dictionary / list 值只按长度前缀跳过并记录原始片段,
+     * 第一次通过 get() 访问时才解码
      *
-     * @throws IOException If it is not a b-encoded byte array.
+     * 只对 byte[] / ByteBuffer 输入生效, 流输入没法回看, 仍然全部解码
      */
-    public AbstractBeValue decodeBytes() throws IOException {
-        var begin = this.reacquireIndicator(true);
-        var num = begin - FLAG_NUMBER_0;
-        if (num < NUMBER_0 || num > NUMBER_9) {
-            throw new LibRuntimeException("number expected!");
-        }
+    public void setLazy(boolean lazy) {
+        this.lazy = lazy;
+    }
 
-        var next = this.read();
-        var i = next - FLAG_NUMBER_0;
-        while (i >= NUMBER_0 && i <= NUMBER_9) {
-            // This can overflow!
-            num = num * 10 + i;
-            next = this.read();
-            i = next - FLAG_NUMBER_0;
-        }
+    /**
+     * 解码 dictionary key 时使用的符号表
+     */
+    public void setSymbols(BeSymbolTable symbols) {
+        this.symbols = symbols;
+    }
 
-        if (next != FLAG_SPLIT) {
-            throw  new LibRuntimeException("colon expected!");
-        }
+    /**
+     * 解码下一个完整的值
+     */
+    public AbstractBeValue decode() throws IOException {
+        return this.decode(this.reader.next());
+    }
 
-        return new ByteStringBeValue(read(num));
+    /**
+     * 解码下一个值, 并确认它是 byte string
+     *
+     * @deprecated 保留给旧的调用方, 请使用 {@link #decode()} 并判断返回值的类型, 之后的版本会移除
+     */
+    @Deprecated
+    public AbstractBeValue decodeBytes() throws IOException {
+        return this.decode(this.expect(BeToken.BYTES, "number expected!"));
     }
 
     /**
-     * Returns the next b-encoded value on the stream and makes sure it is a number.
+     * 解码下一个值, 并确认它是 number
      *
-     * @throws IOException If it is not a number.
+     * @deprecated 保留给旧的调用方, 请使用 {@link #decode()} 并判断返回值的类型, 之后的版本会移除
      */
+    @Deprecated
     public AbstractBeValue decodeNumber() throws IOException {
-        var begin = this.reacquireIndicator(true);
-        if (begin != FLAG_NUMBER) {
-            throw new LibRuntimeException("'i' expected!");
-        }
-
-        var next = this.read();
-        if (next == FLAG_NUMBER_0) {
-            next = this.read();
-            if (next == FLAG_END) {
-                return new NumberBeValue(0L);
-            }
-
-            throw new LibRuntimeException("'e' after zero expected!");
-        }
-
-        var isNegative = false;
+        return this.decode(this.expect(BeToken.NUMBER, "'i' expected!"));
+    }
 
-        if (next == FLAG_NUMBER_NEGATIVE) {
-            next = this.read();
-            if (next == FLAG_NUMBER_0) {
+    /**
+     * 解码下一个值, 并确认它是 list
+     *
+     * @deprecated 保留给旧的调用方, 请使用 {@link #decode()} 并判断返回值的类型, 之后的版本会移除
+     */
+    @Deprecated
+    public AbstractBeValue decodeList() throws IOException {
+        return this.decode(this.expect(BeToken.LIST, "'l' expected!"));
+    }
 
-                throw new LibRuntimeException("'-0' not allowed!");
-            }
-            isNegative = true;
-        }
+    /**
+     * 解码下一个值, 并确认它是 dictionary
+     *
+     * @deprecated 保留给旧的调用方, 请使用 {@link #decode()} 并判断返回值的类型, 之后的版本会移除
+     */
+    @Deprecated
+    public AbstractBeValue decodeDictionary() throws IOException {
+        return this.decode(this.expect(BeToken.DICTIONARY, "'d' expected!"));
+    }
 
-        if (next < FLAG_NUMBER_1 || next > FLAG_NUMBER_9) {
-            throw new LibRuntimeException("invalid number!");
+    private BeToken expect(BeToken expected, String message) throws IOException {
+        var token = this.reader.next();
+        if (token != expected) {
+            throw new LibRuntimeException(message);
         }
+        return token;
+    }
 
-        var number = (long) (next - FLAG_NUMBER_0);
-        next = this.read();
-        var i = next - FLAG_NUMBER_0;
-        while (i >= NUMBER_0 && i <= NUMBER_9) {
-            number = number * 10L + i;
-            next = this.read();
-            i = next - FLAG_NUMBER_0;
-        }
+    /**
+     * 从已经读取的第一个记号开始解码一个完整的值
+     */
+    private AbstractBeValue decode(BeToken token) throws IOException {
+        var builder = new BeTreeBuilder();
+        var lazy = this.lazy && this.reader.spannable();
+        var first = true;
+        while (true) {
+            AbstractBeValue value;
+            if (first) {
+                // 只有根节点是 dictionary 时才延迟解码
+                lazy &= token == BeToken.DICTIONARY;
+                first = false;
+            } else {
+                token = this.reader.next();
+                if (lazy && builder.depth() == 1
+                        && (token == BeToken.DICTIONARY || token == BeToken.LIST)) {
+                    // 根 dictionary 的值, 跳过并记录原始片段, 不知道是否规范编码
+                    var start = this.reader.position() - 1;
+                    this.reader.skip();
+                    builder.value(this.pending(this.reader.span(start)), false);
+                    continue;
+                }
+            }
 
-        if (next != FLAG_END) {
-            throw new LibRuntimeException("'e' expected end!");
+            switch (token) {
+                case DICTIONARY -> builder.start(true, this.reader.position() - 1);
+                case LIST -> builder.start(false, this.reader.position() - 1);
+                case KEY -> builder.key(this.key(), !this.reader.padded());
+                case BYTES -> {
+                    value = builder.value(this.bytes(), !this.reader.padded());
+                    if (value != null) {
+                        return value;
+                    }
+                }
+                case NUMBER -> {
+                    value = builder.value(new NumberBeValue(this.reader.number()), true);
+                    if (value != null) {
+                        return value;
+                    }
+                }
+                case END -> {
+                    value = builder.end(this.reader::span);
+                    if (value != null) {
+                        return value;
+                    }
+                }
+                default -> throw new LibRuntimeException("stream read: -1");
+            }
         }
-
-        var value = isNegative ? (- number) : number;
-        return new NumberBeValue(value);
     }
 
+    // region 路径投影
+
     /**
-     * Returns the next b-encoded value on the stream and makes sure it is a list.
+     * 只解码指定路径上的值, 其余的值按长度前缀跳过, 不构造对象
      *
-     * @throws IOException If it is not a list.
+     * 路径用 '/' 分隔, dictionary 按 key 匹配, list 按下标匹配, '*' 匹配任意 key 或下标,
+     * 比如 "info/name" 、 "info/files/*&#47;length"
+     *
+     * @return 每个路径按出现顺序匹配到的值
      */
-    public AbstractBeValue decodeList() throws IOException {
-        var begin = this.reacquireIndicator(true);
-        if (begin != FLAG_LIST) {
-            throw new LibRuntimeException("'l' expected!");
-        }
-        var result = new ArrayList<AbstractBeValue>();
-        var next = this.reacquireIndicator(false);
-        while (next != FLAG_END) {
-            var value = this.decode();
-            result.add(value);
-            next = this.reacquireIndicator(false);
+    public Map<String, List<AbstractBeValue>> extract(String... paths) throws IOException {
+        var patterns = new Segment[paths.length][];
+        var results = new ArrayList<List<AbstractBeValue>>(paths.length);
+        var active = new int[paths.length];
+        for (var i = 0; i < paths.length; i++) {
+            patterns[i] = Segment.compile(paths[i]);
+            results.add(new ArrayList<>());
+            active[i] = i;
         }
 
-        this.indicator = 0;
+        this.project(this.reader.next(), patterns, active, 0, results);
 
-        return new ListBeValue(result);
+        var extracted = new LinkedHashMap<String, List<AbstractBeValue>>();
+        for (var i = 0; i < paths.length; i++) {
+            extracted.put(paths[i], results.get(i));
+        }
+        return extracted;
     }
 
     /**
-     * Returns the next b-encoded value on the stream and makes sure it is a
-     * map (dictionary).
+     * 在输入上匹配路径
      *
-     * @throws IOException If it is not a map.
+     * @param token     当前值已经读取的第一个记号
+     * @param active    前 matched 段都匹配上的路径
      */
-    public AbstractBeValue decodeDictionary() throws IOException {
-        var begin = this.reacquireIndicator(true);
-        if (begin != FLAG_DICT) {
-            throw new LibRuntimeException("'d' expected!");
+    private void project(BeToken token, Segment[][] patterns, int[] active, int matched,
+                         List<List<AbstractBeValue>> results) throws IOException {
+        // 有路径已经完整匹配, 解码整个值, 更深的路径在解码结果上继续匹配
+        for (var i : active) {
+            if (patterns[i].length == matched) {
+                var value = this.decode(token);
+                for (var j : active) {
+                    select(value, patterns[j], matched, results.get(j));
+                }
+                return;
+            }
         }
 
-        var dictionary = new TreeMap<ByteStringBeValue, AbstractBeValue>();
-        var next = this.reacquireIndicator(false);
-        while (next != FLAG_END) {
-            // Dictionary keys are always strings.
-            var key = this.decode();
-            if (!(key instanceof ByteStringBeValue)) {
-                throw new LibRuntimeException("invalid key in dictionary!");
+        if (token == BeToken.DICTIONARY) {
+            while (this.reader.next() == BeToken.KEY) {
+                var next = matching(patterns, active, matched, this.reader.bytes(), -1);
+                if (next.length == 0) {
+                    this.reader.skipValue();
+                } else {
+                    this.project(this.reader.next(), patterns, next, matched + 1, results);
+                }
+            }
+        } else if (token == BeToken.LIST) {
+            // 先按下标匹配再读取, 不匹配的元素直接跳过, byte string 不会被切出来
+            for (var index = 0; ; index++) {
+                var matches = matching(patterns, active, matched, null, index);
+                if (matches.length == 0) {
+                    this.reader.skipValue();
+                    if (this.reader.token() == BeToken.END) {
+                        break;
+                    }
+                } else {
+                    var next = this.reader.next();
+                    if (next == BeToken.END) {
+                        break;
+                    }
+                    this.project(next, patterns, matches, matched + 1, results);
+                }
             }
-
-            var value = this.decode();
-            dictionary.put((ByteStringBeValue) key, value);
-
-            next = this.reacquireIndicator(false);
         }
+        // byte string / number 已经读完, 没有路径能继续匹配
+    }
 
-        this.indicator = 0;
-
-        return new DictionaryBeValue(dictionary);
+    /**
+     * 第 matched 段能匹配 key (dictionary) 或者 index (list) 的路径
+     */
+    private static int[] matching(Segment[][] patterns, int[] active, int matched, ByteBuffer key, int index) {
+        int[] next = null;
+        var count = 0;
+        for (var i : active) {
+            var pattern = patterns[i];
+            if (pattern.length > matched && pattern[matched].matches(key, index)) {
+                if (next == null) {
+                    next = new int[active.length];
+                }
+                next[count++] = i;
+            }
+        }
+        return next == null ? NONE : Arrays.copyOf(next, count);
     }
 
     /**
-     * Returns what the next b-encoded object will be on the stream or -1
-     * when the end of stream has been reached.
-     *
-     * <p>
-     * Can return something unexpected (not '0' .. '9', 'i', 'l' or 'd') when
-     * the stream isn't b-encoded.
-     * </p>
-     *
-     * This might or might not read one extra byte from the stream.
+     * 在已经解码的值上匹配剩余的路径
      */
-    private int reacquireIndicator(boolean reset) throws IOException {
-        if (this.indicator == 0) {
-            this.indicator = this.in.read();
+    private static void select(AbstractBeValue value, Segment[] pattern, int from, List<AbstractBeValue> out) {
+        if (from == pattern.length) {
+            out.add(value);
+            return;
         }
 
-        var currentIndicator =  this.indicator;
-        if (reset) {
-            this.indicator = 0;
+        var segment = pattern[from];
+        if (value instanceof DictionaryBeValue dict) {
+            var iterator = dict.iterator();
+            while (iterator.hasNext()) {
+                var entry = iterator.next();
+                if (segment.matches(entry.getKey().buffer(), -1)) {
+                    select(entry.getValue(), pattern, from + 1, out);
+                }
+            }
+        } else if (value instanceof ListBeValue list) {
+            var iterator = list.iterator();
+            var index = 0;
+            while (iterator.hasNext()) {
+                var next = iterator.next();
+                if (segment.matches(null, index++)) {
+                    select(next, pattern, from + 1, out);
+                }
+            }
         }
-        return currentIndicator;
     }
 
+    private static final int[] NONE = new int[0];
 
     /**
-     * Returns the next byte read from the InputStream (as int).
+     * 路径中的一段
      *
-     * @throws EOFException If InputStream.read() returned -1.
+     * @param key   dictionary key 的 utf-8 编码
+     * @param index list 下标, 不是数字时为 -1
+     * @param any   '*'
      */
-    private int read() throws IOException {
-        var c = this.in.read();
-        if (c == -1) {
-            throw new EOFException();
+    private static record Segment(byte[] key, int index, boolean any) {
+
+        private static final String ANY = "*";
+
+        static Segment[] compile(String path) {
+            if (path.isEmpty()) {
+                return new Segment[0];
+            }
+
+            var parts = path.split("/");
+            var segments = new Segment[parts.length];
+            for (var i = 0; i < parts.length; i++) {
+                var part = parts[i];
+                segments[i] = new Segment(part.getBytes(StandardCharsets.UTF_8), index(part), ANY.equals(part));
+            }
+            return segments;
+        }
+
+        /**
+         * 只由 ASCII 数字组成的段同时可以作为 list 下标, 超出 int 范围的不可能是下标, 只按 key 匹配
+         */
+        private static int index(String part) {
+            if (part.isEmpty()) {
+                return -1;
+            }
+            var index = 0;
+            for (var i = 0; i < part.length(); i++) {
+                var c = part.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                var digit = c - '0';
+                if (index > (Integer.MAX_VALUE - digit) / 10) {
+                    return -1;
+                }
+                index = index * 10 + digit;
+            }
+            return index;
         }
-        return c;
+
+        /**
+         * @param key   dictionary 的 key, list 时为 null
+         * @param index list 的下标
+         */
+        boolean matches(ByteBuffer key, int index) {
+            if (this.any) {
+                return true;
+            }
+            if (key == null) {
+                return this.index == index;
+            }
+            if (key.remaining() != this.key.length) {
+                return false;
+            }
+            var position = key.position();
+            for (var i = 0; i < this.key.length; i++) {
+                if (key.get(position + i) != this.key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
     }
 
-    /**
-     * Returns a byte[] containing length valid bytes starting at offset zero.
-     *
-     * @throws EOFException If InputStream.read() returned -1 before all
-     * requested bytes could be read.  Note that the byte[] returned might be
-     * bigger then requested but will only contain length valid bytes. The
-     * returned byte[] will be reused when this method is called again.
-     */
-    private byte[] read(int length) throws IOException {
-        var result = new byte[length];
-
-        var read = 0;
-        while (read < length) {
-            var i = this.in.read(result, read, length - read);
-            if (i == -1) {
-                throw new EOFException();
+    // endregion
+
+    private LazyBeValue pending(ByteBuffer span) {
+        var depth = this.maxDepth - 1;
+        var maxStringLength = this.maxStringLength;
+        var table = this.symbols;
+        return new LazyBeValue(span, source -> {
+            try {
+                var decoder = new BeDecoder(source);
+                decoder.setMaxDepth(depth);
+                decoder.setMaxStringLength(maxStringLength);
+                decoder.setSymbols(table);
+                return decoder.decode();
+            } catch (IOException e) {
+                throw new LibRuntimeException("解析异常", e);
+            }
+        });
+    }
+
+    private ByteStringBeValue key() {
+        if (this.symbols != null) {
+            var symbol = this.symbols.lookup(this.reader.bytes());
+            if (symbol != null) {
+                return symbol;
             }
-            read += i;
         }
+        return this.bytes();
+    }
 
-        return result;
+    private ByteStringBeValue bytes() {
+        return ByteStringBeValue.view(this.reader.bytes());
     }
+
 }
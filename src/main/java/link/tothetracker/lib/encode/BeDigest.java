@@ -0,0 +1,12 @@
+package link.tothetracker.lib.encode;
+
+/**
+ * 编码同时计算的摘要
+ *
+ * @param hash  摘要, SHA-1 时是 20 字节
+ * @param bytes 编码结果, 不需要保留时为 null
+ *
+ * @author t3link
+ */
+public final record BeDigest(byte[] hash, byte[] bytes) {
+}
@@ -0,0 +1,302 @@
+package link.tothetracker.lib.encode;
+
+import link.tothetracker.lib.LibRuntimeException;
+import link.tothetracker.lib.encode.type.AbstractBeValue;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+
+/**
+ * 流式的 b-encode 编码器, 一次线性写出, 不拼接中间数组
+ *
+ * 既可以写出整个 AbstractBeValue 树, 也可以作为 BeEventHandler 接收 BeReader 的事件直接转写
+ *
+ * 写到 OutputStream / WritableByteChannel 时先攒在内部缓冲区里, 用完以后要 flush();
+ * 写到 ByteBuffer 时直接写进去, 空间不够抛出 BufferOverflowException
+ *
+ * 设置了 MessageDigest 时, 写出的内容同时分块喂给摘要, 不需要再遍历一遍编码结果
+ *
+ * @author t3link
+ */
+public final class BeEncoder implements BeEventHandler, Flushable {
+
+    private static final byte FLAG_NUMBER = 'i';
+    private static final byte FLAG_LIST = 'l';
+    private static final byte FLAG_DICT = 'd';
+    private static final byte FLAG_SPLIT = ':';
+    private static final byte FLAG_END = 'e';
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * long 的十进制最多 20 个字符 (含负号)
+     */
+    private final byte[] digits = new byte[20];
+
+    private final ByteBuffer buffer;
+
+    private final OutputStream out;
+
+    private final WritableByteChannel channel;
+
+    private MessageDigest[] digests = new MessageDigest[0];
+
+    /**
+     * 写到 ByteBuffer 时, 已经喂给摘要的位置
+     */
+    private int digested;
+
+    public BeEncoder(OutputStream out) {
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.out = out;
+        this.channel = null;
+    }
+
+    public BeEncoder(WritableByteChannel channel) {
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.out = null;
+        this.channel = channel;
+    }
+
+    /**
+     * 直接写进 buffer, 从 position 开始
+     */
+    public BeEncoder(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.out = null;
+        this.channel = null;
+        this.digested = buffer.position();
+    }
+
+    /**
+     * 编码成 byte[], 按 encodedLength() 一次分配
+     */
+    public static byte[] encode(AbstractBeValue value) {
+        var output = new byte[value.encodedLength()];
+        new BeEncoder(ByteBuffer.wrap(output)).write(value);
+        return output;
+    }
+
+    /**
+     * 编码的同时计算摘要, 只过一遍数据
+     *
+     * @param keep 是否保留编码结果, 只需要摘要时不分配编码结果的数组
+     */
+    public static BeDigest digest(AbstractBeValue value, MessageDigest digest, boolean keep) {
+        byte[] output = null;
+        BeEncoder encoder;
+        if (keep) {
+            output = new byte[value.encodedLength()];
+            encoder = new BeEncoder(ByteBuffer.wrap(output));
+        } else {
+            encoder = new BeEncoder(OutputStream.nullOutputStream());
+        }
+        digest.reset();
+        encoder.setDigest(digest);
+        encoder.write(value);
+        encoder.flush();
+        return new BeDigest(digest.digest(), output);
+    }
+
+    /**
+     * 十进制的字符数 (含负号)
+     */
+    public static int digits(long value) {
+        var length = value < 0 ? 2 : 1;
+        // 用负数计算, 避免 Long.MIN_VALUE 溢出
+        var n = value < 0 ? value : -value;
+        while (n <= -10) {
+            n /= 10;
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * 写出的内容同时更新到这些 digest (比如 hybrid 种子同时计算 SHA-1 和 SHA-256), 需要在写出任何内容之前设置
+     */
+    public void setDigest(MessageDigest... digests) {
+        this.digests = digests;
+    }
+
+    /**
+     * 写出一个完整的值
+     */
+    public void write(AbstractBeValue value) {
+        value.write(this);
+    }
+
+    @Override
+    public void startDictionary() {
+        this.put(FLAG_DICT);
+    }
+
+    @Override
+    public void key(ByteBuffer key) {
+        this.bytes(key);
+    }
+
+    /**
+     * 写出 byte string, 不修改 value 的 position
+     */
+    @Override
+    public void bytes(ByteBuffer value) {
+        this.decimal(value.remaining());
+        this.put(FLAG_SPLIT);
+        this.raw(value);
+    }
+
+    public void bytes(byte[] value) {
+        this.bytes(ByteBuffer.wrap(value));
+    }
+
+    @Override
+    public void number(long value) {
+        this.put(FLAG_NUMBER);
+        this.decimal(value);
+        this.put(FLAG_END);
+    }
+
+    @Override
+    public void startList() {
+        this.put(FLAG_LIST);
+    }
+
+    @Override
+    public void end() {
+        this.put(FLAG_END);
+    }
+
+    /**
+     * 原样写出已经编码好的片段, 不修改 encoded 的 position
+     */
+    public void raw(ByteBuffer encoded) {
+        var source = encoded.duplicate();
+        if (this.sink() && source.remaining() > this.buffer.remaining()) {
+            this.drain();
+            if (source.remaining() > this.buffer.capacity()) {
+                // 大片段不经过缓冲区
+                this.digest(source);
+                this.direct(source);
+                return;
+            }
+        }
+        this.buffer.put(source);
+        if (!this.sink() && this.buffer.position() - this.digested >= BUFFER_SIZE) {
+            this.update();
+        }
+    }
+
+    public void raw(byte[] encoded) {
+        this.raw(ByteBuffer.wrap(encoded));
+    }
+
+    /**
+     * 把缓冲区里的内容写到 OutputStream / WritableByteChannel, 并更新摘要
+     */
+    @Override
+    public void flush() {
+        if (!this.sink()) {
+            this.update();
+        } else {
+            this.drain();
+            if (this.out != null) {
+                try {
+                    this.out.flush();
+                } catch (IOException e) {
+                    throw new LibRuntimeException("写入异常", e);
+                }
+            }
+        }
+    }
+
+    private void put(byte b) {
+        if (this.sink() && !this.buffer.hasRemaining()) {
+            this.drain();
+        }
+        this.buffer.put(b);
+    }
+
+    /**
+     * 十进制数字, 不经过 String
+     */
+    private void decimal(long value) {
+        var i = this.digits.length;
+        var negative = value < 0;
+        // 用负数计算, 避免 Long.MIN_VALUE 溢出
+        var n = negative ? value : -value;
+        do {
+            this.digits[--i] = (byte) ('0' - n % 10);
+            n /= 10;
+        } while (n != 0);
+        if (negative) {
+            this.digits[--i] = '-';
+        }
+        for (; i < this.digits.length; i++) {
+            this.put(this.digits[i]);
+        }
+    }
+
+    /**
+     * 是否写到 OutputStream / WritableByteChannel
+     */
+    private boolean sink() {
+        return this.out != null || this.channel != null;
+    }
+
+    private void drain() {
+        this.buffer.flip();
+        this.digest(this.buffer);
+        this.direct(this.buffer);
+        this.buffer.clear();
+    }
+
+    /**
+     * 写到 ByteBuffer 时, 把新写入的部分喂给摘要
+     */
+    private void update() {
+        var position = this.buffer.position();
+        if (position > this.digested) {
+            this.digest(this.buffer.duplicate().position(this.digested).limit(position));
+        }
+        this.digested = position;
+    }
+
+    /**
+     * 从 position 到 limit 的内容喂给所有摘要, 不修改 source
+     */
+    private void digest(ByteBuffer source) {
+        for (var digest : this.digests) {
+            digest.update(source.duplicate());
+        }
+    }
+
+    private void direct(ByteBuffer source) {
+        try {
+            if (this.out != null) {
+                if (source.hasArray()) {
+                    this.out.write(source.array(), source.arrayOffset() + source.position(), source.remaining());
+                    source.position(source.limit());
+                } else {
+                    var chunk = new byte[Math.min(source.remaining(), BUFFER_SIZE)];
+                    while (source.hasRemaining()) {
+                        var length = Math.min(chunk.length, source.remaining());
+                        source.get(chunk, 0, length);
+                        this.out.write(chunk, 0, length);
+                    }
+                }
+            } else {
+                while (source.hasRemaining()) {
+                    this.channel.write(source);
+                }
+            }
+        } catch (IOException e) {
+            throw new LibRuntimeException("写入异常", e);
+        }
+    }
+
+}
@@ -0,0 +1,50 @@
+package link.tothetracker.lib.encode;
+
+import java.nio.ByteBuffer;
+
+/**
+ * BeReader 的事件回调, 不构造 AbstractBeValue 树
+ *
+ * 回调里拿到的 ByteBuffer 只在回调期间有效, 需要保留的话自行拷贝
+ *
+ * @author t3link
+ */
+public interface BeEventHandler {
+
+    /**
+     * dictionary 开始
+     */
+    default void startDictionary() {}
+
+    /**
+     * dictionary 的 key
+     *
+     * @param key key 的内容
+     */
+    default void key(ByteBuffer key) {}
+
+    /**
+     * byte string
+     *
+     * @param value byte string 的内容
+     */
+    default void bytes(ByteBuffer value) {}
+
+    /**
+     * number
+     *
+     * @param value 数值
+     */
+    default void number(long value) {}
+
+    /**
+     * list 开始
+     */
+    default void startList() {}
+
+    /**
+     * dictionary / list 结束
+     */
+    default void end() {}
+
+}
@@ -0,0 +1,65 @@
+package link.tothetracker.lib.encode;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * b-encode 解码器的数据源
+ *
+ * 数组 / ByteBuffer 直接通过游标读取, 只有真正的 InputStream 才需要缓冲
+ *
+ * @author t3link
+ */
+abstract class BeInput {
+
+    static final int EOF = -1;
+
+    /**
+     * 读取下一个字节, 流结束时返回 -1
+     */
+    abstract int read() throws IOException;
+
+    /**
+     * 读取指定长度的字节, 尽量返回源数据上的视图而不拷贝
+     *
+     * @throws EOFException 剩余数据不足
+     */
+    abstract ByteBuffer slice(int length) throws IOException;
+
+    /**
+     * 跳过指定长度的字节, 不分配内存
+     *
+     * @throws EOFException 剩余数据不足
+     */
+    abstract void skip(int length) throws IOException;
+
+    /**
+     * 从 start 到当前位置的原始数据视图, 数据源不支持回看时返回 null
+     */
+    abstract ByteBuffer span(long start);
+
+    /**
+     * 是否支持通过 span 回看原始数据
+     */
+    abstract boolean spannable();
+
+    /**
+     * 已经读取的字节数
+     */
+    abstract long position();
+
+    static BeInput of(byte[] data) {
+        return new BufferBeInput(ByteBuffer.wrap(data));
+    }
+
+    static BeInput of(ByteBuffer buffer) {
+        return new BufferBeInput(buffer);
+    }
+
+    static BeInput of(InputStream in) {
+        return new StreamBeInput(in);
+    }
+
+}
@@ -0,0 +1,178 @@
+package link.tothetracker.lib.encode;
+
+import link.tothetracker.lib.LibRuntimeException;
+
+/**
+ * byte string 长度前缀和 number 的词法, BeReader 和 BePushDecoder 共用
+ *
+ * 逐个字节喂入, 片与片之间保留状态; 拉模式的 BeReader 一口气喂完, 推模式的 BePushDecoder 按分片喂入,
+ * 两边的校验规则和错误信息因此完全一致
+ *
+ * @author t3link
+ */
+final class BeLexer {
+
+    private static final char FLAG_SPLIT = ':';
+    private static final char FLAG_END = 'e';
+
+    private static final char FLAG_NUMBER_NEGATIVE = '-';
+    private static final char FLAG_NUMBER_0 = '0';
+    private static final char FLAG_NUMBER_9 = '9';
+
+    /**
+     * 默认的 byte string 最大长度, 不做额外限制
+     */
+    static final int DEFAULT_MAX_STRING_LENGTH = Integer.MAX_VALUE;
+
+    private int maxStringLength = DEFAULT_MAX_STRING_LENGTH;
+
+    // region 长度前缀
+
+    private int length;
+
+    private int digits;
+
+    private boolean padded;
+
+    // endregion
+
+    // region number
+
+    /**
+     * 按负数累加, 这样 Long.MIN_VALUE 也能表示
+     */
+    private long number;
+
+    private boolean negative;
+
+    private boolean zero;
+
+    // endregion
+
+    void setMaxStringLength(int maxStringLength) {
+        this.maxStringLength = maxStringLength;
+    }
+
+    static boolean digit(int c) {
+        return c >= FLAG_NUMBER_0 && c <= FLAG_NUMBER_9;
+    }
+
+    /**
+     * 开始一个长度前缀
+     *
+     * @param c 第一个数字
+     */
+    void startLength(int c) {
+        this.length = c - FLAG_NUMBER_0;
+        this.digits = 1;
+        this.padded = false;
+    }
+
+    /**
+     * 喂入长度前缀的下一个字节
+     *
+     * @return 读到冒号时返回 true, 长度前缀结束
+     */
+    boolean length(int c) {
+        if (digit(c)) {
+            var i = c - FLAG_NUMBER_0;
+            if (this.length == 0 && this.digits == 1) {
+                // 前导 0
+                this.padded = true;
+            }
+            if (this.length > (this.maxStringLength - i) / 10) {
+                throw new LibRuntimeException("byte string too long!");
+            }
+            this.length = this.length * 10 + i;
+            this.digits++;
+            return false;
+        }
+
+        if (c != FLAG_SPLIT) {
+            throw new LibRuntimeException("colon expected!");
+        }
+        if (this.length > this.maxStringLength) {
+            throw new LibRuntimeException("byte string too long!");
+        }
+        return true;
+    }
+
+    /**
+     * 长度前缀的值
+     */
+    int length() {
+        return this.length;
+    }
+
+    /**
+     * 长度前缀是否有前导 0
+     */
+    boolean padded() {
+        return this.padded;
+    }
+
+    /**
+     * 开始一个 number, 'i' 已经读过了
+     */
+    void startNumber() {
+        this.number = 0L;
+        this.digits = 0;
+        this.negative = false;
+        this.zero = false;
+    }
+
+    /**
+     * 喂入 number 的下一个字节
+     *
+     * @return 读到 'e' 时返回 true, number 结束
+     */
+    boolean number(int c) {
+        if (c == FLAG_END) {
+            if (this.digits == 0) {
+                throw new LibRuntimeException("invalid number!");
+            }
+            if (!this.negative && this.number == Long.MIN_VALUE) {
+                throw new LibRuntimeException("number overflow!");
+            }
+            return true;
+        }
+
+        if (c == FLAG_NUMBER_NEGATIVE && this.digits == 0 && !this.negative) {
+            this.negative = true;
+            return false;
+        }
+
+        if (!digit(c)) {
+            if (this.zero) {
+                throw new LibRuntimeException("'e' after zero expected!");
+            }
+            throw new LibRuntimeException(this.digits == 0 ? "invalid number!" : "'e' expected end!");
+        }
+
+        if (this.zero) {
+            throw new LibRuntimeException("'e' after zero expected!");
+        }
+        if (c == FLAG_NUMBER_0 && this.digits == 0) {
+            if (this.negative) {
+                throw new LibRuntimeException("'-0' not allowed!");
+            }
+            this.zero = true;
+        }
+        var i = c - FLAG_NUMBER_0;
+        if (this.number < (Long.MIN_VALUE + i) / 10) {
+            // 不能静默溢出, 否则原始片段和 getValue() 不一致
+            throw new LibRuntimeException("number overflow!");
+        }
+        this.number = this.number * 10L - i;
+        this.digits++;
+        return false;
+    }
+
+    /**
+     * number 的值
+     */
+    long number() {
+        return this.negative ? this.number : (- this.number);
+    }
+
+}
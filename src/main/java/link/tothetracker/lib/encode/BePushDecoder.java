@@ -0,0 +1,257 @@
+package link.tothetracker.lib.encode;
+
+import link.tothetracker.lib.LibRuntimeException;
+import link.tothetracker.lib.encode.type.AbstractBeValue;
+import link.tothetracker.lib.encode.type.ByteStringBeValue;
+import link.tothetracker.lib.encode.type.NumberBeValue;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 推模式的解码器, 数据分片到达时逐片喂入, 片与片之间保留解析状态
+ *
+ * <pre>
+ * var decoder = new BePushDecoder();
+ * while (!decoder.feed(chunk)) { ... }
+ * var value = decoder.finish();
+ * </pre>
+ *
+ * 分片在调用之后就可能被复用, 所以 byte string 总是拷贝出来, 也不记录原始片段
+ *
+ * @author t3link
+ */
+public final class BePushDecoder {
+
+    private static final char FLAG_NUMBER = 'i';
+    private static final char FLAG_LIST = 'l';
+    private static final char FLAG_DICT = 'd';
+    private static final char FLAG_END = 'e';
+
+    private static final char FLAG_NUMBER_0 = '0';
+    private static final char FLAG_NUMBER_9 = '9';
+
+    private static final byte[] EMPTY = new byte[0];
+
+    /**
+     * 解析状态
+     */
+    private static final byte STATE_VALUE = 0;
+    private static final byte STATE_LENGTH = 1;
+    private static final byte STATE_STRING = 2;
+    private static final byte STATE_NUMBER = 3;
+    private static final byte STATE_DONE = 4;
+
+    /**
+     * 容器栈里的状态
+     */
+    private static final byte IN_LIST = 0;
+    private static final byte IN_KEY = 1;
+    private static final byte IN_VALUE = 2;
+
+    private final BeTreeBuilder builder = new BeTreeBuilder();
+
+    private final BeLexer lexer = new BeLexer();
+
+    private int maxDepth = BeReader.DEFAULT_MAX_DEPTH;
+
+    private byte[] stack = new byte[16];
+
+    private int depth;
+
+    private byte state = STATE_VALUE;
+
+    /**
+     * 是否读到过数据
+     */
+    private boolean started;
+
+    private AbstractBeValue result;
+
+    // region 正在读取的 byte string
+
+    private boolean key;
+
+    private int length;
+
+    /**
+     * 随分片到达逐步扩容, 不按长度前缀预先分配
+     */
+    private byte[] string;
+
+    private int filled;
+
+    // endregion
+
+    /**
+     * 最大嵌套深度, 超过时抛出异常
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * byte string 的最大长度, 超过时抛出异常
+     */
+    public void setMaxStringLength(int maxStringLength) {
+        this.lexer.setMaxStringLength(maxStringLength);
+    }
+
+    /**
+     * 喂入一个分片, 从 position 读到 limit
+     *
+     * @return 根节点是否已经解码完毕, 完毕之后剩余的数据不会被读取
+     */
+    public boolean feed(ByteBuffer chunk) {
+        while (this.state != STATE_DONE && chunk.hasRemaining()) {
+            this.started = true;
+            if (this.state == STATE_STRING) {
+                this.fill(chunk);
+                continue;
+            }
+
+            var c = chunk.get() & 0xFF;
+            switch (this.state) {
+                case STATE_VALUE -> this.value(c);
+                case STATE_LENGTH -> this.length(c);
+                case STATE_NUMBER -> this.number(c);
+                default -> throw new IllegalStateException();
+            }
+        }
+
+        return this.state == STATE_DONE;
+    }
+
+    /**
+     * 根节点是否已经解码完毕
+     */
+    public boolean done() {
+        return this.state == STATE_DONE;
+    }
+
+    /**
+     * 输入结束, 返回根节点
+     *
+     * @throws EOFException 根节点还没有解码完毕
+     */
+    public AbstractBeValue finish() throws EOFException {
+        if (this.state == STATE_DONE) {
+            return this.result;
+        }
+        if (!this.started) {
+            throw new LibRuntimeException("stream read: -1");
+        }
+        throw new EOFException();
+    }
+
+    private void value(int c) {
+        var top = this.depth == 0 ? IN_LIST : this.stack[this.depth - 1];
+        if (c == FLAG_END) {
+            if (this.depth == 0 || top == IN_VALUE) {
+                throw new LibRuntimeException("unknown indicator!");
+            }
+            this.depth--;
+            this.completed(this.builder.end(start -> null));
+            return;
+        }
+
+        if (top == IN_KEY) {
+            // Dictionary keys are always strings.
+            if (c == FLAG_NUMBER || c == FLAG_LIST || c == FLAG_DICT) {
+                throw new LibRuntimeException("invalid key in dictionary!");
+            }
+            if (c < FLAG_NUMBER_0 || c > FLAG_NUMBER_9) {
+                throw new LibRuntimeException("unknown indicator!");
+            }
+        }
+
+        if (c >= FLAG_NUMBER_0 && c <= FLAG_NUMBER_9) {
+            this.key = top == IN_KEY;
+            this.lexer.startLength(c);
+            this.state = STATE_LENGTH;
+        } else if (c == FLAG_NUMBER) {
+            this.lexer.startNumber();
+            this.state = STATE_NUMBER;
+        } else if (c == FLAG_LIST) {
+            this.push(IN_LIST);
+            this.builder.start(false, -1L);
+        } else if (c == FLAG_DICT) {
+            this.push(IN_KEY);
+            this.builder.start(true, -1L);
+        } else {
+            throw new LibRuntimeException("unknown indicator!");
+        }
+    }
+
+    private void length(int c) {
+        if (!this.lexer.length(c)) {
+            return;
+        }
+
+        this.length = this.lexer.length();
+        this.string = EMPTY;
+        this.filled = 0;
+        this.state = STATE_STRING;
+        if (this.length == 0) {
+            this.string();
+        }
+    }
+
+    private void fill(ByteBuffer chunk) {
+        var size = Math.min(chunk.remaining(), this.length - this.filled);
+        var needed = this.filled + size;
+        if (needed > this.string.length) {
+            // 按实际到达的数据翻倍扩容, 最多到长度前缀
+            var capacity = (int) Math.min(this.length, Math.max(needed, this.string.length * 2L));
+            this.string = Arrays.copyOf(this.string, capacity);
+        }
+        chunk.get(this.string, this.filled, size);
+        this.filled += size;
+        if (this.filled == this.length) {
+            this.string();
+        }
+    }
+
+    private void string() {
+        var value = new ByteStringBeValue(this.string);
+        this.string = null;
+        this.state = STATE_VALUE;
+        if (this.key) {
+            this.builder.key(value, !this.lexer.padded());
+            this.stack[this.depth - 1] = IN_VALUE;
+        } else {
+            this.completed(this.builder.value(value, !this.lexer.padded()));
+        }
+    }
+
+    private void number(int c) {
+        if (this.lexer.number(c)) {
+            this.state = STATE_VALUE;
+            this.completed(this.builder.value(new NumberBeValue(this.lexer.number()), true));
+        }
+    }
+
+    /**
+     * 一个值解码完毕, dictionary 接下来需要 key, 根节点则结束
+     */
+    private void completed(AbstractBeValue root) {
+        if (root != null) {
+            this.result = root;
+            this.state = STATE_DONE;
+        } else if (this.stack[this.depth - 1] == IN_VALUE) {
+            this.stack[this.depth - 1] = IN_KEY;
+        }
+    }
+
+    private void push(byte state) {
+        if (this.depth >= this.maxDepth) {
+            throw new LibRuntimeException("nesting too deep!");
+        }
+        if (this.depth == this.stack.length) {
+            this.stack = Arrays.copyOf(this.stack, this.depth << 1);
+        }
+        this.stack[this.depth++] = state;
+    }
+
+}
@@ -0,0 +1,338 @@
+package link.tothetracker.lib.encode;
+
+import link.tothetracker.lib.LibRuntimeException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 事件驱动的 b-encode 读取器, 不构造 AbstractBeValue 树, 内存占用只和嵌套深度有关
+ *
+ * 既可以通过 next() 逐个拉取记号, 也可以通过 read(handler) 把一个完整的值推送给回调
+ *
+ * <pre>
+ * d 4:info d 6:length i1e e e
+ * DICTIONARY KEY DICTIONARY KEY NUMBER END END EOF
+ * </pre>
+ *
+ * @author t3link
+ */
+public final class BeReader {
+
+    private static final char FLAG_NUMBER = 'i';
+    private static final char FLAG_LIST = 'l';
+    private static final char FLAG_DICT = 'd';
+    private static final char FLAG_END = 'e';
+
+    private static final char FLAG_NUMBER_0 = '0';
+    private static final char FLAG_NUMBER_9 = '9';
+
+    /**
+     * 容器栈里的状态
+     */
+    private static final byte IN_LIST = 0;
+    private static final byte IN_KEY = 1;
+    private static final byte IN_VALUE = 2;
+
+    /**
+     * 默认的最大嵌套深度, 正常的种子不会超过 5 层
+     */
+    public static final int DEFAULT_MAX_DEPTH = 64;
+
+    private final BeInput in;
+
+    private final BeLexer lexer = new BeLexer();
+
+    private int maxDepth = DEFAULT_MAX_DEPTH;
+
+    /**
+     * 容器栈, 只记录每一层是 list 还是 dictionary (以及 dictionary 接下来是 key 还是 value)
+     */
+    private byte[] stack = new byte[16];
+
+    private int depth;
+
+    /**
+     * 根节点是否已经读取完毕
+     */
+    private boolean finished;
+
+    private BeToken token;
+
+    private ByteBuffer bytes;
+
+    private long number;
+
+    /**
+     * 最近一个 byte string 的长度是否有前导 0
+     */
+    private boolean padded;
+
+    public BeReader(InputStream in) {
+        this.in = BeInput.of(in);
+    }
+
+    public BeReader(byte[] data) {
+        this.in = BeInput.of(data);
+    }
+
+    public BeReader(ByteBuffer buffer) {
+        this.in = BeInput.of(buffer);
+    }
+
+    /**
+     * 把 buffer 里的根节点以事件的形式推送给回调
+     */
+    public static void read(ByteBuffer buffer, BeEventHandler handler) throws IOException {
+        new BeReader(buffer).read(handler);
+    }
+
+    /**
+     * 把流里的根节点以事件的形式推送给回调
+     */
+    public static void read(InputStream in, BeEventHandler handler) throws IOException {
+        new BeReader(in).read(handler);
+    }
+
+    /**
+     * 最大嵌套深度, 超过时抛出异常
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * byte string 的最大长度, 超过时抛出异常
+     */
+    public void setMaxStringLength(int maxStringLength) {
+        this.lexer.setMaxStringLength(maxStringLength);
+    }
+
+    /**
+     * 读取下一个记号
+     */
+    public BeToken next() throws IOException {
+        this.bytes = null;
+        this.token = this.advance(false);
+        return this.token;
+    }
+
+    /**
+     * 当前记号
+     */
+    public BeToken token() {
+        return this.token;
+    }
+
+    /**
+     * 当前 KEY / BYTES 的内容, buffer 输入时是源数据上的视图
+     */
+    public ByteBuffer bytes() {
+        return this.bytes;
+    }
+
+    /**
+     * 当前 NUMBER 的值
+     */
+    public long number() {
+        return this.number;
+    }
+
+    /**
+     * 当前所在的容器深度, 根节点外为 0
+     */
+    public int depth() {
+        return this.depth;
+    }
+
+    /**
+     * 已经读取的字节数
+     */
+    public long position() {
+        return this.in.position();
+    }
+
+    /**
+     * 如果当前记号是 DICTIONARY / LIST, 直接跳到对应的 END 之后
+     * byte string 只按长度前缀跳过, 不分配内存
+     */
+    public void skip() throws IOException {
+        if (this.token != BeToken.DICTIONARY && this.token != BeToken.LIST) {
+            return;
+        }
+
+        var target = this.depth - 1;
+        this.bytes = null;
+        while (this.depth > target) {
+            this.token = this.advance(true);
+        }
+    }
+
+    /**
+     * 跳过下一个完整的值, byte string 只按长度前缀跳过, 不分配内存
+     */
+    public void skipValue() throws IOException {
+        this.bytes = null;
+        this.token = this.advance(true);
+        this.skip();
+    }
+
+    /**
+     * 读取下一个完整的值, 以事件的形式推送给回调
+     */
+    public void read(BeEventHandler handler) throws IOException {
+        var target = this.depth;
+        do {
+            switch (this.next()) {
+                case DICTIONARY -> handler.startDictionary();
+                case LIST -> handler.startList();
+                case KEY -> handler.key(this.bytes);
+                case BYTES -> handler.bytes(this.bytes);
+                case NUMBER -> handler.number(this.number);
+                case END -> handler.end();
+                default -> throw new LibRuntimeException("value expected!");
+            }
+        } while (this.depth > target || this.token == BeToken.KEY);
+    }
+
+    // region 包内使用
+
+    /**
+     * 从 start 到当前位置的原始数据, 流输入时返回 null
+     */
+    ByteBuffer span(long start) {
+        return this.in.span(start);
+    }
+
+    boolean spannable() {
+        return this.in.spannable();
+    }
+
+    boolean padded() {
+        return this.padded;
+    }
+
+    // endregion
+
+    private BeToken advance(boolean skipping) throws IOException {
+        if (this.finished) {
+            return BeToken.EOF;
+        }
+
+        var c = this.in.read();
+        if (c == BeInput.EOF) {
+            if (this.depth == 0) {
+                throw new LibRuntimeException("stream read: -1");
+            }
+            throw new EOFException();
+        }
+
+        var state = this.depth == 0 ? IN_LIST : this.stack[this.depth - 1];
+        if (c == FLAG_END) {
+            if (this.depth == 0 || state == IN_VALUE) {
+                throw new LibRuntimeException("unknown indicator!");
+            }
+            this.depth--;
+            this.completed();
+            return BeToken.END;
+        }
+
+        if (state == IN_KEY) {
+            // Dictionary keys are always strings.
+            if (c == FLAG_NUMBER || c == FLAG_LIST || c == FLAG_DICT) {
+                throw new LibRuntimeException("invalid key in dictionary!");
+            }
+            if (c < FLAG_NUMBER_0 || c > FLAG_NUMBER_9) {
+                throw new LibRuntimeException("unknown indicator!");
+            }
+            this.string(c, skipping);
+            this.stack[this.depth - 1] = IN_VALUE;
+            return BeToken.KEY;
+        }
+
+        if (c >= FLAG_NUMBER_0 && c <= FLAG_NUMBER_9) {
+            this.string(c, skipping);
+            this.completed();
+            return BeToken.BYTES;
+        } else if (c == FLAG_NUMBER) {
+            this.number = this.readNumber();
+            this.completed();
+            return BeToken.NUMBER;
+        } else if (c == FLAG_LIST) {
+            this.push(IN_LIST);
+            return BeToken.LIST;
+        } else if (c == FLAG_DICT) {
+            this.push(IN_KEY);
+            return BeToken.DICTIONARY;
+        } else {
+            throw new LibRuntimeException("unknown indicator!");
+        }
+    }
+
+    /**
+     * 一个值读取完毕, dictionary 接下来需要 key, 根节点则结束
+     */
+    private void completed() {
+        if (this.depth == 0) {
+            this.finished = true;
+        } else if (this.stack[this.depth - 1] == IN_VALUE) {
+            this.stack[this.depth - 1] = IN_KEY;
+        }
+    }
+
+    private void push(byte state) {
+        if (this.depth >= this.maxDepth) {
+            throw new LibRuntimeException("nesting too deep!");
+        }
+        if (this.depth == this.stack.length) {
+            this.stack = Arrays.copyOf(this.stack, this.depth << 1);
+        }
+        this.stack[this.depth++] = state;
+    }
+
+    /**
+     * 读取 byte string, 第一个数字已经读过了
+     */
+    private void string(int begin, boolean skipping) throws IOException {
+        this.lexer.startLength(begin);
+        while (!this.lexer.length(this.read())) {
+            // 读到冒号为止
+        }
+        this.padded = this.lexer.padded();
+
+        var num = this.lexer.length();
+        if (skipping) {
+            this.in.skip(num);
+        } else {
+            this.bytes = this.in.slice(num);
+        }
+    }
+
+    /**
+     * 读取 number, 'i' 已经读过了
+     */
+    private long readNumber() throws IOException {
+        this.lexer.startNumber();
+        while (!this.lexer.number(this.read())) {
+            // 读到 'e' 为止
+        }
+        return this.lexer.number();
+    }
+
+    /**
+     * Returns the next byte read from the input (as int).
+     *
+     * @throws EOFException If the input has ended.
+     */
+    private int read() throws IOException {
+        var c = this.in.read();
+        if (c == BeInput.EOF) {
+            throw new EOFException();
+        }
+        return c;
+    }
+
+}
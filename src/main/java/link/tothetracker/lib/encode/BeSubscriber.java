@@ -0,0 +1,88 @@
+package link.tothetracker.lib.encode;
+
+import link.tothetracker.lib.encode.type.AbstractBeValue;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * 把 BePushDecoder 适配成 Flow.Subscriber, 每次只请求一个分片
+ *
+ * 根节点解码完毕之后取消订阅, 剩余的数据会被忽略
+ *
+ * @author t3link
+ */
+public final class BeSubscriber implements Flow.Subscriber<ByteBuffer> {
+
+    private final BePushDecoder decoder = new BePushDecoder();
+
+    private final CompletableFuture<AbstractBeValue> result = new CompletableFuture<>();
+
+    private Flow.Subscription subscription;
+
+    /**
+     * 解码结果
+     */
+    public CompletableFuture<AbstractBeValue> result() {
+        return this.result;
+    }
+
+    /**
+     * 最大嵌套深度, 超过时抛出异常
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.decoder.setMaxDepth(maxDepth);
+    }
+
+    /**
+     * byte string 的最大长度, 超过时抛出异常
+     */
+    public void setMaxStringLength(int maxStringLength) {
+        this.decoder.setMaxStringLength(maxStringLength);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(ByteBuffer chunk) {
+        if (this.result.isDone()) {
+            return;
+        }
+
+        try {
+            if (this.decoder.feed(chunk)) {
+                this.result.complete(this.decoder.finish());
+                this.subscription.cancel();
+            } else {
+                this.subscription.request(1);
+            }
+        } catch (Exception e) {
+            this.result.completeExceptionally(e);
+            this.subscription.cancel();
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        this.result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if (this.result.isDone()) {
+            return;
+        }
+
+        try {
+            this.result.complete(this.decoder.finish());
+        } catch (Exception e) {
+            this.result.completeExceptionally(e);
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+package link.tothetracker.lib.encode;
+
+import link.tothetracker.lib.encode.type.ByteStringBeValue;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 常用 dictionary key 的符号表
+ *
+ * 解码时命中的 key 直接复用表里的实例, 既不分配对象, 之后的比较也可以直接走引用相等
+ *
+ * @author t3link
+ */
+public final class BeSymbolTable {
+
+    /**
+     * 开放寻址的哈希表, 大小为 2 的幂
+     */
+    private final ByteStringBeValue[] slots;
+
+    private final int mask;
+
+    /**
+     * 超过这个长度的 key 一定不在表里, 不需要计算哈希
+     */
+    private final int maxLength;
+
+    private BeSymbolTable(ByteStringBeValue... symbols) {
+        var size = Integer.highestOneBit(Math.max(symbols.length, 1) * 4 - 1) << 1;
+        this.slots = new ByteStringBeValue[size];
+        this.mask = size - 1;
+
+        var max = 0;
+        for (var symbol : symbols) {
+            var index = this.index(symbol.hashCode());
+            while (this.slots[index] != null && !this.slots[index].equals(symbol)) {
+                index = (index + 1) & this.mask;
+            }
+            this.slots[index] = symbol;
+            max = Math.max(max, symbol.length());
+        }
+        this.maxLength = max;
+    }
+
+    public static BeSymbolTable of(ByteStringBeValue... symbols) {
+        return new BeSymbolTable(symbols);
+    }
+
+    /**
+     * 查找内容相同的符号
+     *
+     * @param bytes 从 position 到 limit 的内容
+     * @return 表里的实例, 不存在时返回 null
+     */
+    public ByteStringBeValue lookup(ByteBuffer bytes) {
+        if (bytes.remaining() > this.maxLength) {
+            return null;
+        }
+
+        var hash = bytes.hashCode();
+        var index = this.index(hash);
+        var symbol = this.slots[index];
+        while (symbol != null) {
+            if (symbol.hashCode() == hash && symbol.contentEquals(bytes)) {
+                return symbol;
+            }
+            index = (index + 1) & this.mask;
+            symbol = this.slots[index];
+        }
+        return null;
+    }
+
+    private int index(int hash) {
+        return (hash ^ (hash >>> 16)) & this.mask;
+    }
+
+}
@@ -0,0 +1,47 @@
+package link.tothetracker.lib.encode;
+
+/**
+ * BeReader 读取到的记号
+ *
+ * @author t3link
+ */
+public enum BeToken {
+
+    /**
+     * dictionary 开始 'd'
+     */
+    DICTIONARY,
+
+    /**
+     * list 开始 'l'
+     */
+    LIST,
+
+    /**
+     * dictionary 的 key
+     */
+    KEY,
+
+    /**
+     * byte string
+     */
+    BYTES,
+
+    /**
+     * number
+     */
+    NUMBER,
+
+    /**
+     * dictionary / list 结束 'e'
+     */
+    END,
+
+    /**
+     * 根节点读取完毕
+     */
+    EOF,
+
+    ;
+
+}
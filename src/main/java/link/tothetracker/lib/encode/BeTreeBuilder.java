@@ -0,0 +1,161 @@
+package link.tothetracker.lib.encode;
+
+import link.tothetracker.lib.encode.type.AbstractBeValue;
+import link.tothetracker.lib.encode.type.ByteStringBeValue;
+import link.tothetracker.lib.encode.type.DictionaryBeValue;
+import link.tothetracker.lib.encode.type.ListBeValue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.LongFunction;
+
+/**
+ * 根据记号构造 AbstractBeValue 树, 自己维护容器栈而不在 Java 栈上递归
+ *
+ * 拉模式的 BeDecoder 和推模式的 BePushDecoder 共用
+ *
+ * @author t3link
+ */
+final class BeTreeBuilder {
+
+    /**
+     * 容器栈, 按深度复用
+     */
+    private Frame[] frames = new Frame[8];
+
+    private int depth;
+
+    /**
+     * dictionary / list 开始
+     *
+     * @param start 容器在输入中的起始位置
+     */
+    void start(boolean dictionary, long start) {
+        this.frame(this.depth++).reset(dictionary, start);
+    }
+
+    /**
+     * dictionary 的 key
+     *
+     * @param canonical 是否为规范编码, 比如长度没有前导 0
+     */
+    void key(ByteStringBeValue key, boolean canonical) {
+        var frame = this.frame(this.depth - 1);
+        frame.canonical &= canonical;
+        frame.key(key);
+    }
+
+    /**
+     * 一个完整的值
+     *
+     * @param canonical 是否为规范编码, 比如长度没有前导 0
+     * @return 如果是根节点则返回, 否则返回 null
+     */
+    AbstractBeValue value(AbstractBeValue value, boolean canonical) {
+        if (this.depth == 0) {
+            return value;
+        }
+        var frame = this.frame(this.depth - 1);
+        frame.canonical &= canonical;
+        frame.add(value);
+        return null;
+    }
+
+    /**
+     * 当前所在的容器深度
+     */
+    int depth() {
+        return this.depth;
+    }
+
+    /**
+     * 容器结束, 规范编码的容器记录原始片段, 并把是否规范的结果合并到上一层
+     *
+     * @param spans 根据起始位置取得原始片段, 不支持时返回 null
+     * @return 如果是根节点则返回, 否则返回 null
+     */
+    AbstractBeValue end(LongFunction<ByteBuffer> spans) {
+        var frame = this.frame(--this.depth);
+        var value = frame.build();
+        if (frame.canonical) {
+            value.span(spans.apply(frame.start));
+        }
+        frame.clear();
+        return this.value(value, frame.canonical);
+    }
+
+    private Frame frame(int depth) {
+        if (depth >= this.frames.length) {
+            this.frames = Arrays.copyOf(this.frames, Math.max(depth + 1, this.frames.length << 1));
+        }
+        var frame = this.frames[depth];
+        if (frame == null) {
+            frame = new Frame();
+            this.frames[depth] = frame;
+        }
+        return frame;
+    }
+
+    /**
+     * 正在构造的 dictionary / list
+     */
+    private static final class Frame {
+
+        private TreeMap<ByteStringBeValue, AbstractBeValue> dictionary;
+
+        private List<AbstractBeValue> list;
+
+        private ByteStringBeValue key;
+
+        private long start;
+
+        /**
+         * dictionary 的 key 严格有序, byte string 的长度没有前导 0
+         */
+        private boolean canonical;
+
+        void reset(boolean dictionary, long start) {
+            if (dictionary) {
+                this.dictionary = new TreeMap<>();
+            } else {
+                this.list = new ArrayList<>();
+            }
+            this.start = start;
+            this.canonical = true;
+        }
+
+        void key(ByteStringBeValue key) {
+            // key 必须严格有序, 否则重新编码的结果会不一样
+            if (this.key != null && this.key.compareTo(key) >= 0) {
+                this.canonical = false;
+            }
+            this.key = key;
+        }
+
+        void add(AbstractBeValue value) {
+            if (this.dictionary != null) {
+                this.dictionary.put(this.key, value);
+            } else {
+                this.list.add(value);
+            }
+        }
+
+        AbstractBeValue build() {
+            if (this.dictionary != null) {
+                return new DictionaryBeValue(this.dictionary);
+            }
+            return new ListBeValue(this.list);
+        }
+
+        void clear() {
+            this.dictionary = null;
+            this.list = null;
+            this.key = null;
+        }
+
+    }
+
+}
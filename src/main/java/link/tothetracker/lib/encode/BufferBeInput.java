@@ -0,0 +1,68 @@
+package link.tothetracker.lib.encode;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+
+/**
+ * 基于 byte[] / ByteBuffer 的游标读取, 不经过 InputStream
+ *
+ * @author t3link
+ */
+final class BufferBeInput extends BeInput {
+
+    private final ByteBuffer buffer;
+
+    private final int limit;
+
+    private int cursor;
+
+    BufferBeInput(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.cursor = buffer.position();
+        this.limit = buffer.limit();
+    }
+
+    @Override
+    int read() {
+        if (this.cursor >= this.limit) {
+            return EOF;
+        }
+        return this.buffer.get(this.cursor++) & 0xFF;
+    }
+
+    @Override
+    ByteBuffer slice(int length) throws EOFException {
+        if (length < 0 || length > this.limit - this.cursor) {
+            throw new EOFException();
+        }
+
+        var result = this.buffer.slice(this.cursor, length);
+        this.cursor += length;
+        return result;
+    }
+
+    @Override
+    void skip(int length) throws EOFException {
+        if (length < 0 || length > this.limit - this.cursor) {
+            throw new EOFException();
+        }
+        this.cursor += length;
+    }
+
+    @Override
+    ByteBuffer span(long start) {
+        var offset = this.buffer.position() + (int) start;
+        return this.buffer.slice(offset, this.cursor - offset);
+    }
+
+    @Override
+    boolean spannable() {
+        return true;
+    }
+
+    @Override
+    long position() {
+        return this.cursor - this.buffer.position();
+    }
+
+}
@@ -0,0 +1,115 @@
+package link.tothetracker.lib.encode;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 带缓冲的 InputStream 读取, 避免每个字节都调用一次 InputStream.read()
+ *
+ * @author t3link
+ */
+final class StreamBeInput extends BeInput {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final InputStream in;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    private int cursor;
+
+    private int limit;
+
+    /**
+     * 之前的缓冲区已经消费的字节数
+     */
+    private long consumed;
+
+    StreamBeInput(InputStream in) {
+        this.in = in;
+    }
+
+    @Override
+    int read() throws IOException {
+        if (this.cursor >= this.limit && !this.fill()) {
+            return EOF;
+        }
+        return this.buffer[this.cursor++] & 0xFF;
+    }
+
+    private byte[] read(int length) throws IOException {
+        if (length < 0) {
+            throw new EOFException();
+        }
+
+        var result = new byte[length];
+        // 先消费缓冲区里剩余的部分
+        var read = Math.min(length, this.limit - this.cursor);
+        System.arraycopy(this.buffer, this.cursor, result, 0, read);
+        this.cursor += read;
+
+        // 剩余部分直接读到结果里, 不再经过缓冲区
+        while (read < length) {
+            var i = this.in.read(result, read, length - read);
+            if (i == -1) {
+                throw new EOFException();
+            }
+            read += i;
+            this.consumed += i;
+        }
+
+        return result;
+    }
+
+    /**
+     * 流里的数据读过就没有了, 只能拷贝
+     */
+    @Override
+    ByteBuffer slice(int length) throws IOException {
+        return ByteBuffer.wrap(this.read(length));
+    }
+
+    @Override
+    void skip(int length) throws IOException {
+        if (length < 0) {
+            throw new EOFException();
+        }
+
+        var skipped = Math.min(length, this.limit - this.cursor);
+        this.cursor += skipped;
+        if (skipped < length) {
+            this.in.skipNBytes(length - skipped);
+            this.consumed += length - skipped;
+        }
+    }
+
+    @Override
+    ByteBuffer span(long start) {
+        return null;
+    }
+
+    @Override
+    boolean spannable() {
+        return false;
+    }
+
+    @Override
+    long position() {
+        return this.consumed + this.cursor - this.limit;
+    }
+
+    private boolean fill() throws IOException {
+        var read = this.in.read(this.buffer, 0, BUFFER_SIZE);
+        if (read <= 0) {
+            return false;
+        }
+
+        this.cursor = 0;
+        this.limit = read;
+        this.consumed += read;
+        return true;
+    }
+
+}
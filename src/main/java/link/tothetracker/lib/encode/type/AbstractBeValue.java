@@ -1,5 +1,9 @@
 package link.tothetracker.lib.encode.type;
 
+import link.tothetracker.lib.encode.BeEncoder;
+
+import java.nio.ByteBuffer;
+
 /**
  * @author t3link
  */
@@ -10,6 +14,13 @@ public abstract class AbstractBeValue {
      */
     protected byte[] bytes;
 
+    /**
+     * 解码时记录的原始编码片段 (只记录 dictionary / list)
+     *
+     * 只有规范编码 (key 严格有序, 长度没有前导 0) 的值才会记录, 修改后失效
+     */
+    protected ByteBuffer span;
+
     /**
      * 输出 b-encode 结果
      */
@@ -19,19 +30,85 @@ public abstract class AbstractBeValue {
             return bytes;
         }
 
+        // 没有被修改过的规范编码, 直接拷贝原始片段
+        if (this.span != null && this.intact()) {
+            var output = new byte[this.span.remaining()];
+            this.span.get(0, output);
+            return output;
+        }
+
         // 否则 重新编码
-        return encode();
+        return BeEncoder.encode(this);
     }
 
     /**
-     * 重新 b-encode 编码
-     *
-     * @return byte[]
+     * b-encode 编码后的字节数, 不实际编码
+     */
+    public int encodedLength() {
+        if (bytes != null) {
+            return bytes.length;
+        }
+
+        if (this.span != null && this.intact()) {
+            return this.span.remaining();
+        }
+
+        return measure();
+    }
+
+    /**
+     * 把 b-encode 结果写到 encoder, 能直接拷贝的部分原样拷贝
      */
-    protected abstract byte[] encode();
+    public void write(BeEncoder encoder) {
+        if (bytes != null) {
+            encoder.raw(bytes);
+            return;
+        }
+
+        if (this.span != null && this.intact()) {
+            encoder.raw(this.span);
+            return;
+        }
+
+        encode(encoder);
+    }
+
+    /**
+     * 重新 b-encode 编码, 子节点通过 write(encoder) 写出
+     */
+    protected abstract void encode(BeEncoder encoder);
+
+    /**
+     * 重新编码的字节数, 和 encode(encoder) 写出的一致
+     */
+    protected abstract int measure();
 
     public void clone(byte[] bytes) {
         this.bytes = bytes;
     }
 
+    /**
+     * 记录解码时的原始编码片段, 调用方需要保证片段就是当前值的规范编码
+     */
+    public void span(ByteBuffer span) {
+        this.span = span;
+    }
+
+    /**
+     * 重新编码的结果是否和解码时的原始片段一致, 即可以直接拷贝原始片段
+     *
+     * byte string / number 不可变, 总是一致的
+     */
+    public boolean intact() {
+        return true;
+    }
+
+    /**
+     * 内容被修改, 原始数据失效
+     */
+    protected void invalidate() {
+        this.bytes = null;
+        this.span = null;
+    }
+
 }
@@ -1,28 +1,86 @@
 package link.tothetracker.lib.encode.type;
 
-import lombok.Getter;
-import org.apache.commons.lang3.ArrayUtils;
+import link.tothetracker.lib.encode.BeEncoder;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
 
 /**
  * @author t3link
  */
 public class ByteStringBeValue extends AbstractBeValue implements Comparable<ByteStringBeValue> {
 
+	/**
+	 * byte string 的内容, 可能是解码输入上的一段 (offset, length) 视图, 也可能包装的是私有数组
+	 *
+	 * 只使用绝对位置的读取, 不会修改 position / limit; getValue() 拷贝出私有数组以后改为包装私有数组
+	 */
+	private ByteBuffer view;
+
 	/**
 	 * byte string 的值 [其实也可以直接用 String 类型]
+	 *
+	 * 视图模式下只有调用 getValue() 时才会拷贝出私有数组
+	 */
+	private byte[] value;
+
+	/**
+	 * 缓存的哈希值, 0 表示还没有计算
 	 */
-	@Getter
-	private final byte[] value;
+	private int hash;
+
+	/**
+	 * 缓存的编码长度, 0 表示还没有计算
+	 */
+	private int encodedLength;
 
 	public ByteStringBeValue(byte[] value) {
 		this.value = value;
+		this.view = ByteBuffer.wrap(value);
 	}
 
 	public ByteStringBeValue(String value) {
-		this.value = value.getBytes(StandardCharsets.UTF_8);
+		this(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private ByteStringBeValue(ByteBuffer view) {
+		this.view = view;
+	}
+
+	/**
+	 * 构造一个不拷贝数据的视图, 视图和源数据共享内容, 源数据在使用期间不能被修改
+	 *
+	 * @param view 从 position 到 limit 的内容, 之后不能再修改它的 position / limit
+	 */
+	public static ByteStringBeValue view(ByteBuffer view) {
+		return new ByteStringBeValue(view.position() == 0 ? view : view.slice());
+	}
+
+	/**
+	 * byte string 的值, 视图模式下会拷贝出一份私有数组并缓存, 之后不再引用源数据
+	 */
+	public byte[] getValue() {
+		if (this.value == null) {
+			var bytes = new byte[this.view.remaining()];
+			this.view.get(0, bytes);
+			this.value = bytes;
+			this.view = ByteBuffer.wrap(bytes);
+		}
+		return this.value;
+	}
+
+	/**
+	 * 字节长度, 不会拷贝数据
+	 */
+	public int length() {
+		return this.view.remaining();
+	}
+
+	/**
+	 * 内容的只读视图, 不会拷贝数据
+	 */
+	public ByteBuffer buffer() {
+		return this.view.asReadOnlyBuffer();
 	}
 
 	@Override
@@ -34,28 +92,65 @@ public class ByteStringBeValue extends AbstractBeValue implements Comparable<Byt
 			return false;
 		}
 		ByteStringBeValue that = (ByteStringBeValue) o;
-		return Arrays.equals(value, that.value);
+		if (this.hash != 0 && that.hash != 0 && this.hash != that.hash) {
+			return false;
+		}
+		return this.view.equals(that.view);
+	}
+
+	/**
+	 * 内容是否和 bytes 从 position 到 limit 的部分相同
+	 */
+	public boolean contentEquals(ByteBuffer bytes) {
+		return this.view.equals(bytes);
 	}
 
 	@Override
 	public int hashCode() {
-		return Arrays.hashCode(value);
+		var h = this.hash;
+		if (h == 0) {
+			h = this.view.hashCode();
+			this.hash = h;
+		}
+		return h;
+	}
+
+	@Override
+	protected void encode(BeEncoder encoder) {
+		encoder.bytes(this.view);
 	}
 
 	@Override
-	protected byte[] encode() {
-		byte[] b1 = (value.length + ":").getBytes(StandardCharsets.UTF_8);
-		return ArrayUtils.addAll(b1, value);
+	protected int measure() {
+		if (this.encodedLength == 0) {
+			var length = this.view.remaining();
+			this.encodedLength = BeEncoder.digits(length) + 1 + length;
+		}
+		return this.encodedLength;
 	}
 
 	@Override
 	public String toString() {
-		return new String(this.value, StandardCharsets.UTF_8);
+		if (this.view.hasArray()) {
+			return new String(this.view.array(), this.view.arrayOffset(),
+					this.view.remaining(), StandardCharsets.UTF_8);
+		}
+		return new String(this.getValue(), StandardCharsets.UTF_8);
 	}
 
+	/**
+	 * 按无符号字节比较, 和 b-encode 规范里 dictionary key 的排序一致
+	 */
 	@Override
 	public int compareTo(ByteStringBeValue other) {
-		return this.toString().compareTo(other.toString());
+		var index = this.view.mismatch(other.view);
+		if (index < 0) {
+			return 0;
+		}
+		if (index == this.view.remaining() || index == other.view.remaining()) {
+			return this.view.remaining() - other.view.remaining();
+		}
+		return Byte.toUnsignedInt(this.view.get(index)) - Byte.toUnsignedInt(other.view.get(index));
 	}
 
 }
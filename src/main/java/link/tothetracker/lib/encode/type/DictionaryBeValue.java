@@ -1,8 +1,8 @@
 package link.tothetracker.lib.encode.type;
 
-import org.apache.commons.lang3.ArrayUtils;
+import link.tothetracker.lib.encode.BeEncoder;
 
-import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
@@ -23,34 +23,90 @@ public class DictionaryBeValue extends AbstractBeValue {
 	}
 
 	public AbstractBeValue get(ByteStringBeValue key) {
-		return this.value.get(key);
+		var entryValue = this.value.get(key);
+		if (entryValue instanceof LazyBeValue lazy) {
+			// 第一次访问时解码, 替换掉延迟的值
+			entryValue = lazy.resolve();
+			this.value.put(key, entryValue);
+		}
+		return entryValue;
 	}
 
+	/**
+	 * 只能通过 remove 修改字典
+	 */
 	public Iterator<Map.Entry<ByteStringBeValue, AbstractBeValue>> iterator() {
-		return this.value.entrySet().iterator();
+		var iterator = this.value.entrySet().iterator();
+		return new Iterator<>() {
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public Map.Entry<ByteStringBeValue, AbstractBeValue> next() {
+				return resolved(iterator.next());
+			}
+
+			@Override
+			public void remove() {
+				iterator.remove();
+				invalidate();
+			}
+		};
 	}
 
 	public Set<ByteStringBeValue> keys() {
-		return this.value.keySet();
+		return Collections.unmodifiableSet(this.value.keySet());
 	}
 
 	public void put(ByteStringBeValue key, AbstractBeValue value) {
 		// 确保文件的缓存 bytes 被清除
 		this.value.put(key, value);
+		this.invalidate();
+	}
+
+	/**
+	 * 把延迟解码的值替换成解码后的结果
+	 */
+	private static Map.Entry<ByteStringBeValue, AbstractBeValue> resolved(
+			Map.Entry<ByteStringBeValue, AbstractBeValue> entry) {
+		if (entry.getValue() instanceof LazyBeValue lazy) {
+			entry.setValue(lazy.resolve());
+		}
+		return entry;
+	}
+
+	@Override
+	public boolean intact() {
+		if (this.span == null) {
+			return false;
+		}
+		for (var entry : this.value.entrySet()) {
+			if (!resolved(entry).getValue().intact()) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	@Override
-	protected byte[] encode() {
-		var output = ArrayUtils.addAll("d".getBytes(StandardCharsets.UTF_8));
+	protected void encode(BeEncoder encoder) {
+		encoder.startDictionary();
 		for (var entry : this.value.entrySet()) {
-			var key = entry.getKey();
-			byte[] bytes = key.write();
-			output = ArrayUtils.addAll(output, bytes);
+			entry.getKey().write(encoder);
+			resolved(entry).getValue().write(encoder);
+		}
+		encoder.end();
+	}
 
-			var entryValue = entry.getValue();
-			bytes = entryValue.write();
-			output = ArrayUtils.addAll(output, bytes);
+	@Override
+	protected int measure() {
+		var length = 2;
+		for (var entry : this.value.entrySet()) {
+			length += entry.getKey().encodedLength();
+			length += resolved(entry).getValue().encodedLength();
 		}
-		return ArrayUtils.addAll(output, "e".getBytes(StandardCharsets.UTF_8));
+		return length;
 	}
 }
@@ -0,0 +1,59 @@
+package link.tothetracker.lib.encode.type;
+
+import link.tothetracker.lib.encode.BeEncoder;
+
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+
+/**
+ * 延迟解码的值, 只记录原始编码片段, 第一次被访问时才解码
+ *
+ * 只作为 DictionaryBeValue 的值出现, 字典在 get / 遍历时会把它替换成解码后的结果
+ *
+ * @author t3link
+ */
+public final class LazyBeValue extends AbstractBeValue {
+
+    /**
+     * 原始编码片段
+     */
+    private final ByteBuffer source;
+
+    private final Function<ByteBuffer, AbstractBeValue> loader;
+
+    private AbstractBeValue value;
+
+    public LazyBeValue(ByteBuffer source, Function<ByteBuffer, AbstractBeValue> loader) {
+        this.source = source;
+        this.loader = loader;
+    }
+
+    /**
+     * 解码并缓存结果
+     */
+    public AbstractBeValue resolve() {
+        if (this.value == null) {
+            this.value = this.loader.apply(this.source.duplicate());
+        }
+        return this.value;
+    }
+
+    /**
+     * 没有解码过, 不知道原始片段是不是规范编码
+     */
+    @Override
+    public boolean intact() {
+        return false;
+    }
+
+    @Override
+    protected void encode(BeEncoder encoder) {
+        this.resolve().write(encoder);
+    }
+
+    @Override
+    protected int measure() {
+        return this.resolve().encodedLength();
+    }
+
+}
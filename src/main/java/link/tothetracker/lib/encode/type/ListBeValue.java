@@ -1,8 +1,7 @@
 package link.tothetracker.lib.encode.type;
 
-import org.apache.commons.lang3.ArrayUtils;
+import link.tothetracker.lib.encode.BeEncoder;
 
-import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
 import java.util.List;
 
@@ -16,18 +15,58 @@ public class ListBeValue extends AbstractBeValue {
 		this.value = value;
 	}
 
+	/**
+	 * 只能通过 remove 修改列表
+	 */
 	public Iterator<AbstractBeValue> iterator() {
-		return this.value.iterator();
+		var iterator = this.value.iterator();
+		return new Iterator<>() {
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public AbstractBeValue next() {
+				return iterator.next();
+			}
+
+			@Override
+			public void remove() {
+				iterator.remove();
+				invalidate();
+			}
+		};
 	}
 
 	@Override
-	protected byte[] encode() {
-		var output = ArrayUtils.addAll("l".getBytes(StandardCharsets.UTF_8));
+	public boolean intact() {
+		if (this.span == null) {
+			return false;
+		}
+		for (var beValue : this.value) {
+			if (!beValue.intact()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	protected void encode(BeEncoder encoder) {
+		encoder.startList();
 		for (var beValue : value) {
-			var bytes = beValue.write();
-			output = ArrayUtils.addAll(output, bytes);
+			beValue.write(encoder);
 		}
+		encoder.end();
+	}
 
-		return ArrayUtils.addAll(output, "e".getBytes(StandardCharsets.UTF_8));
+	@Override
+	protected int measure() {
+		var length = 2;
+		for (var beValue : value) {
+			length += beValue.encodedLength();
+		}
+		return length;
 	}
 }
@@ -1,9 +1,8 @@
 package link.tothetracker.lib.encode.type;
 
+import link.tothetracker.lib.encode.BeEncoder;
 import lombok.Getter;
 
-import java.nio.charset.StandardCharsets;
-
 /**
  * @author t3link
  */
@@ -11,6 +10,11 @@ public class NumberBeValue extends AbstractBeValue {
 	@Getter
 	private final long value;
 
+	/**
+	 * 缓存的编码长度, 0 表示还没有计算
+	 */
+	private int length;
+
 	public NumberBeValue(long value) {
 		this.value = value;
 	}
@@ -21,7 +25,15 @@ public class NumberBeValue extends AbstractBeValue {
 	}
 
 	@Override
-	protected byte[] encode() {
-		return ("i" + value + "e").getBytes(StandardCharsets.UTF_8);
+	protected void encode(BeEncoder encoder) {
+		encoder.number(value);
+	}
+
+	@Override
+	protected int measure() {
+		if (length == 0) {
+			length = BeEncoder.digits(value) + 2;
+		}
+		return length;
 	}
 }
@@ -5,10 +5,19 @@ package link.tothetracker.lib.torrent;
  * torrent 文件抽象保存的数据结构
  *      单文件也可以认为是 多文件 的一个子集
  *
+ * v2 / hybrid 种子 (BEP 52) 额外保存 v2 的 info-hash 和 piece layers, 纯 v1 种子时都为 null
+ *      hash 在 v1 / hybrid 时是 SHA-1, 纯 v2 时是截断到 20 字节的 SHA-256 (tracker 上使用的形式)
+ *
  * @author t3link
  */
 public final record T3tInfo(byte[] bytes,
                             String hash,
-                            link.tothetracker.lib.torrent.file.T3tFiles files) {
+                            link.tothetracker.lib.torrent.file.T3tFiles files,
+                            String hashV2,
+                            byte[] pieceLayers) {
+
+    public T3tInfo(byte[] bytes, String hash, link.tothetracker.lib.torrent.file.T3tFiles files) {
+        this(bytes, hash, files, null, null);
+    }
 
 }
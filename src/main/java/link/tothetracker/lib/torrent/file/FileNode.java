@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import link.tothetracker.lib.LibRuntimeException;
 import link.tothetracker.lib.constant.ByteUnit;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.commons.collections4.CollectionUtils;
@@ -26,7 +27,6 @@ public class FileNode {
     @Setter
     private FileType type;
 
-    @Setter
     private String name;
 
     @Setter
@@ -50,7 +50,13 @@ public class FileNode {
     @JsonIgnore
     private FileNode parent;
 
+    /**
+     * 从根开始的完整路径, 每一级是 b-encode 编码的名称, 用逗号连接
+     *
+     * T3tTree 创建的节点不设置, 第一次读取时从父节点往上拼出来
+     */
     @JsonIgnore
+    @Getter(AccessLevel.NONE)
     private String nodeKey;
 
     /**
@@ -71,6 +77,32 @@ public class FileNode {
         return node;
     }
 
+    /**
+     * 反序列化时同样经过共享字典
+     */
+    public void setName(String name) {
+        this.name = SegmentDictionary.share(name);
+    }
+
+    public String getNodeKey() {
+        if (this.nodeKey == null) {
+            var names = new ArrayList<String>();
+            for (var node = this; node != null && node.depth > 0; node = node.parent) {
+                names.add(node.name);
+            }
+            var key = new StringBuilder();
+            for (var i = names.size() - 1; i >= 0; i--) {
+                var name = names.get(i);
+                key.append(name.length()).append(':').append(name);
+                if (i != 0) {
+                    key.append(',');
+                }
+            }
+            this.nodeKey = key.toString();
+        }
+        return this.nodeKey;
+    }
+
     public long styled(long length) {
         this.length = length;
         this.size = ByteUnit.styled(length);
@@ -91,8 +123,8 @@ public class FileNode {
             return true;
         }
 
-        var array = this.parent.children.toArray();
-        return this.equals(array[array.length - 1]);
+        var children = this.parent.children;
+        return children.get(children.size() - 1) == this;
     }
 
     public void add(FileNode node) {
@@ -110,7 +142,8 @@ public class FileNode {
             return;
         }
 
-        var lowerKey = node.nodeKey.toLowerCase();
+        // 兄弟节点的完整路径只有名称不同, 比较名称就够了
+        var lowerKey = node.name.toLowerCase();
         if (!insensitiveKeys.add(lowerKey)) {
             throw new LibRuntimeException("dupe name '" +
                     node.name + "', case-sensitive is not supported now!");
@@ -0,0 +1,490 @@
+package link.tothetracker.lib.torrent.file;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import link.tothetracker.lib.LibRuntimeException;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * 文件树的序列化, 手写的流式读写, 不经过 ObjectMapper 的反射
+ *
+ * JSON 和 JsonUtil.toJson(root) 的输出逐字节一致 (字段顺序 id 、 type 、 name 、 size 、 children, 省略 null),
+ * 两边可以互相读取; CBOR (RFC 8949) 是同一个数据模型的二进制形式, 字段名不变, 数字和字符串不需要转义,
+ * 体积更小, 解码时也不需要逐字符解析
+ *
+ * 和 JsonUtil.fromJson 一样, 读出的节点只有序列化的字段, 没有 parent 和 depth
+ *
+ * @author t3link
+ */
+public final class FileNodeCodec {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString TYPE = new SerializedString("type");
+    private static final SerializedString NAME = new SerializedString("name");
+    private static final SerializedString SIZE = new SerializedString("size");
+    private static final SerializedString CHILDREN = new SerializedString("children");
+
+    private static final int CBOR_UNSIGNED = 0;
+    private static final int CBOR_NEGATIVE = 1;
+    private static final int CBOR_BYTES = 2;
+    private static final int CBOR_TEXT = 3;
+    private static final int CBOR_ARRAY = 4;
+    private static final int CBOR_MAP = 5;
+    private static final int CBOR_TAG = 6;
+    private static final int CBOR_SIMPLE = 7;
+
+    /**
+     * 不定长度的 additional information, 以及结束符
+     */
+    private static final int CBOR_INDEFINITE = 31;
+    private static final int CBOR_BREAK = 0xFF;
+    private static final int CBOR_NULL = 0xF6;
+
+    private static final byte[] CBOR_ID = cborKey("id");
+    private static final byte[] CBOR_TYPE = cborKey("type");
+    private static final byte[] CBOR_NAME = cborKey("name");
+    private static final byte[] CBOR_SIZE = cborKey("size");
+    private static final byte[] CBOR_CHILDREN = cborKey("children");
+
+    private FileNodeCodec() {}
+
+    // region JSON
+
+    public static String toJson(FileNode node) {
+        var writer = new StringWriter();
+        try (var generator = FACTORY.createGenerator(writer)) {
+            write(node, generator);
+        } catch (IOException e) {
+            throw new LibRuntimeException(e);
+        }
+        return writer.toString();
+    }
+
+    public static FileNode fromJson(String json) {
+        try (var parser = FACTORY.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new LibRuntimeException("invalid file node json!");
+            }
+            return read(parser);
+        } catch (IOException e) {
+            throw new LibRuntimeException(e);
+        }
+    }
+
+    private static void write(FileNode node, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(ID);
+        generator.writeNumber(node.getId());
+        if (node.getType() != null) {
+            generator.writeFieldName(TYPE);
+            generator.writeString(node.getType().name());
+        }
+        if (node.getName() != null) {
+            generator.writeFieldName(NAME);
+            generator.writeString(node.getName());
+        }
+        if (node.getSize() != null) {
+            generator.writeFieldName(SIZE);
+            generator.writeString(node.getSize());
+        }
+        if (node.getChildren() != null) {
+            generator.writeFieldName(CHILDREN);
+            generator.writeStartArray();
+            for (var child : node.getChildren()) {
+                write(child, generator);
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * 当前在 START_OBJECT 上, 读到对应的 END_OBJECT
+     */
+    private static FileNode read(JsonParser parser) throws IOException {
+        var node = new FileNode();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var field = parser.getCurrentName();
+            var token = parser.nextToken();
+            var nil = token == JsonToken.VALUE_NULL;
+            switch (field) {
+                case "id" -> node.setId(nil ? 0 : parser.getValueAsInt());
+                case "type" -> node.setType(nil ? null : type(parser.getText()));
+                case "name" -> node.setName(nil ? null : parser.getText());
+                case "size" -> node.setSize(nil ? null : parser.getText());
+                case "children" -> {
+                    if (nil) {
+                        node.setChildren(null);
+                        break;
+                    }
+                    if (token != JsonToken.START_ARRAY) {
+                        throw new LibRuntimeException("invalid file node json!");
+                    }
+                    var children = new ArrayList<FileNode>();
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        children.add(read(parser));
+                    }
+                    if (parser.currentToken() != JsonToken.END_ARRAY) {
+                        // children 里只能是对象
+                        throw new LibRuntimeException("invalid file node json!");
+                    }
+                    node.setChildren(children);
+                }
+                // 和 JsonUtil 一样忽略未知的字段
+                default -> parser.skipChildren();
+            }
+        }
+        return node;
+    }
+
+    // endregion
+
+    // region CBOR
+
+    public static byte[] toCbor(FileNode node) {
+        var output = new CborOutput();
+        write(node, output);
+        return output.toByteArray();
+    }
+
+    public static FileNode fromCbor(byte[] cbor) {
+        var input = new CborInput(cbor);
+        var node = read(input);
+        if (input.position != cbor.length) {
+            throw new LibRuntimeException("invalid file node cbor!");
+        }
+        return node;
+    }
+
+    private static void write(FileNode node, CborOutput output) {
+        var fields = 1;
+        if (node.getType() != null) {
+            fields++;
+        }
+        if (node.getName() != null) {
+            fields++;
+        }
+        if (node.getSize() != null) {
+            fields++;
+        }
+        if (node.getChildren() != null) {
+            fields++;
+        }
+
+        output.head(CBOR_MAP, fields);
+        output.raw(CBOR_ID);
+        var id = node.getId();
+        if (id >= 0) {
+            output.head(CBOR_UNSIGNED, id);
+        } else {
+            output.head(CBOR_NEGATIVE, -1L - id);
+        }
+        if (node.getType() != null) {
+            output.raw(CBOR_TYPE);
+            output.text(node.getType().name());
+        }
+        if (node.getName() != null) {
+            output.raw(CBOR_NAME);
+            output.text(node.getName());
+        }
+        if (node.getSize() != null) {
+            output.raw(CBOR_SIZE);
+            output.text(node.getSize());
+        }
+        if (node.getChildren() != null) {
+            output.raw(CBOR_CHILDREN);
+            output.head(CBOR_ARRAY, node.getChildren().size());
+            for (var child : node.getChildren()) {
+                write(child, output);
+            }
+        }
+    }
+
+    /**
+     * 读一个节点, 同时接受定长和不定长的 map / array (其他 CBOR 编码器常用不定长的形式)
+     */
+    private static FileNode read(CborInput input) {
+        var initial = input.next();
+        if (initial >>> 5 != CBOR_MAP) {
+            throw new LibRuntimeException("invalid file node cbor!");
+        }
+        var fields = input.length(initial);
+
+        var node = new FileNode();
+        for (var i = 0L; fields < 0 ? !input.end() : i < fields; i++) {
+            var field = input.text();
+            if (input.peek() == CBOR_NULL) {
+                input.next();
+                switch (field) {
+                    case "type" -> node.setType(null);
+                    case "name" -> node.setName(null);
+                    case "size" -> node.setSize(null);
+                    case "children" -> node.setChildren(null);
+                    default -> { }
+                }
+                continue;
+            }
+            switch (field) {
+                case "id" -> node.setId(id(input.integer()));
+                case "type" -> node.setType(type(input.text()));
+                case "name" -> node.setName(input.text());
+                case "size" -> node.setSize(input.text());
+                case "children" -> {
+                    var head = input.next();
+                    if (head >>> 5 != CBOR_ARRAY) {
+                        throw new LibRuntimeException("invalid file node cbor!");
+                    }
+                    var count = input.length(head);
+                    var children = new ArrayList<FileNode>(count < 0 ? 10 : (int) Math.min(count, 1024));
+                    for (var j = 0L; count < 0 ? !input.end() : j < count; j++) {
+                        children.add(read(input));
+                    }
+                    node.setChildren(children);
+                }
+                default -> input.skip();
+            }
+        }
+        return node;
+    }
+
+    /**
+     * 和 JSON 一样, 超出 int 范围的 id 不截断
+     */
+    private static int id(long value) {
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new LibRuntimeException("invalid file node cbor!");
+        }
+        return (int) value;
+    }
+
+    private static byte[] cborKey(String key) {
+        var output = new CborOutput();
+        output.text(key);
+        return output.toByteArray();
+    }
+
+    /**
+     * 只写 CBOR 需要的几种头, 直接操作数组
+     */
+    private static final class CborOutput {
+
+        private byte[] bytes = new byte[256];
+
+        private int position;
+
+        void head(int major, long value) {
+            this.ensure(9);
+            var type = major << 5;
+            if (value < 24) {
+                this.bytes[this.position++] = (byte) (type | value);
+            } else if (value < 0x100) {
+                this.bytes[this.position++] = (byte) (type | 24);
+                this.bytes[this.position++] = (byte) value;
+            } else if (value < 0x10000) {
+                this.bytes[this.position++] = (byte) (type | 25);
+                this.put(value, 2);
+            } else if (value < 0x100000000L) {
+                this.bytes[this.position++] = (byte) (type | 26);
+                this.put(value, 4);
+            } else {
+                this.bytes[this.position++] = (byte) (type | 27);
+                this.put(value, 8);
+            }
+        }
+
+        void text(String text) {
+            var utf8 = text.getBytes(StandardCharsets.UTF_8);
+            this.head(CBOR_TEXT, utf8.length);
+            this.raw(utf8);
+        }
+
+        void raw(byte[] raw) {
+            this.ensure(raw.length);
+            System.arraycopy(raw, 0, this.bytes, this.position, raw.length);
+            this.position += raw.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(this.bytes, this.position);
+        }
+
+        private void put(long value, int length) {
+            for (var i = length - 1; i >= 0; i--) {
+                this.bytes[this.position++] = (byte) (value >>> (i * 8));
+            }
+        }
+
+        private void ensure(int length) {
+            if (this.position + length > this.bytes.length) {
+                this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, this.position + length));
+            }
+        }
+
+    }
+
+    private static final class CborInput {
+
+        private final byte[] bytes;
+
+        private int position;
+
+        CborInput(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int peek() {
+            if (this.position >= this.bytes.length) {
+                throw new LibRuntimeException("invalid file node cbor!");
+            }
+            return this.bytes[this.position] & 0xFF;
+        }
+
+        int next() {
+            var initial = this.peek();
+            this.position++;
+            return initial;
+        }
+
+        /**
+         * 不定长容器是否读到了结束符
+         */
+        boolean end() {
+            if (this.peek() == CBOR_BREAK) {
+                this.position++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * 头部携带的长度 / 数值, 不定长时返回 -1
+         */
+        long length(int initial) {
+            var info = initial & 0x1F;
+            if (info < 24) {
+                return info;
+            }
+            var size = switch (info) {
+                case 24 -> 1;
+                case 25 -> 2;
+                case 26 -> 4;
+                case 27 -> 8;
+                case CBOR_INDEFINITE -> 0;
+                default -> throw new LibRuntimeException("invalid file node cbor!");
+            };
+            if (size == 0) {
+                return -1L;
+            }
+            if (this.position + size > this.bytes.length) {
+                throw new LibRuntimeException("invalid file node cbor!");
+            }
+            var value = 0L;
+            for (var i = 0; i < size; i++) {
+                value = (value << 8) | (this.bytes[this.position++] & 0xFF);
+            }
+            if (value < 0) {
+                throw new LibRuntimeException("invalid file node cbor!");
+            }
+            return value;
+        }
+
+        long integer() {
+            var initial = this.next();
+            var value = this.length(initial);
+            return switch (initial >>> 5) {
+                case CBOR_UNSIGNED -> value;
+                case CBOR_NEGATIVE -> -1L - value;
+                default -> throw new LibRuntimeException("invalid file node cbor!");
+            };
+        }
+
+        String text() {
+            var initial = this.next();
+            var length = this.length(initial);
+            if (initial >>> 5 != CBOR_TEXT || length < 0 || length > this.bytes.length - this.position) {
+                throw new LibRuntimeException("invalid file node cbor!");
+            }
+            var text = new String(this.bytes, this.position, (int) length, StandardCharsets.UTF_8);
+            this.position += (int) length;
+            return text;
+        }
+
+        /**
+         * 跳过头部携带的参数字节, uint64 的高位 、 float64 的符号位都是合法的
+         */
+        private void skipArgument(int initial) {
+            var info = initial & 0x1F;
+            var size = 0;
+            if (info >= 24) {
+                size = switch (info) {
+                    case 24 -> 1;
+                    case 25 -> 2;
+                    case 26 -> 4;
+                    case 27 -> 8;
+                    default -> throw new LibRuntimeException("invalid file node cbor!");
+                };
+            }
+            if (size > this.bytes.length - this.position) {
+                throw new LibRuntimeException("invalid file node cbor!");
+            }
+            this.position += size;
+        }
+
+        /**
+         * 跳过一个未知字段的值
+         */
+        void skip() {
+            var initial = this.next();
+            var major = initial >>> 5;
+            if (major == CBOR_SIMPLE || major == CBOR_UNSIGNED || major == CBOR_NEGATIVE) {
+                // 数值 、 简单值和浮点数只有头部携带的字节, 原样跳过, 不按长度检查范围
+                this.skipArgument(initial);
+                return;
+            }
+            var length = this.length(initial);
+            switch (major) {
+                case CBOR_BYTES, CBOR_TEXT -> {
+                    if (length < 0) {
+                        while (!this.end()) {
+                            this.skip();
+                        }
+                    } else if (length > this.bytes.length - this.position) {
+                        throw new LibRuntimeException("invalid file node cbor!");
+                    } else {
+                        this.position += (int) length;
+                    }
+                }
+                case CBOR_ARRAY, CBOR_MAP -> {
+                    var items = major == CBOR_MAP ? 2 : 1;
+                    for (var i = 0L; length < 0 ? !this.end() : i < length * items; i++) {
+                        this.skip();
+                    }
+                }
+                case CBOR_TAG -> this.skip();
+                default -> throw new IllegalStateException();
+            }
+        }
+
+    }
+
+    // endregion
+
+    private static FileType type(String name) {
+        try {
+            return FileType.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new LibRuntimeException("unknown file type '" + name + "'!");
+        }
+    }
+
+}
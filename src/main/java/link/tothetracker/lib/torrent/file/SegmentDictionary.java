@@ -0,0 +1,117 @@
+package link.tothetracker.lib.torrent.file;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 路径分量的共享字典, 常驻内存的大量文件树里相同的名称 (Sample 、 CD1 、 BDMV 、 *.nfo ...) 只保存一个 String
+ *
+ * 默认关闭; 通过 setShared 开启以后, T3tFiles 的字符串表 (T3tTree 建树用的名称都来自这里) 和
+ * FileNode 反序列化时的 setName 都会经过字典
+ *
+ * 条目是弱引用的, 没有文件树再引用某个名称时, 它会随 GC 一起从字典中消失;
+ * 按 hash 分成多段加锁, 并行解析时不会都竞争同一把锁
+ *
+ * @author t3link
+ */
+public final class SegmentDictionary {
+
+    private static final int STRIPES = 16;
+
+    /**
+     * String 对象头 + 字段, 以及 byte[] 的对象头, 按 64 位 JVM 开启压缩指针估算
+     */
+    private static final int STRING_OVERHEAD = 24 + 16;
+
+    private static volatile SegmentDictionary shared;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final WeakHashMap<String, WeakReference<String>>[] stripes = new WeakHashMap[STRIPES];
+
+    private final LongAdder lookups = new LongAdder();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder savedBytes = new LongAdder();
+
+    public SegmentDictionary() {
+        for (var i = 0; i < STRIPES; i++) {
+            this.stripes[i] = new WeakHashMap<>();
+        }
+    }
+
+    /**
+     * 当前共享的字典, 未开启时为 null
+     */
+    public static SegmentDictionary getShared() {
+        return shared;
+    }
+
+    /**
+     * 开启 (或者用 null 关闭) 共享字典, 只影响之后创建的文件树
+     */
+    public static void setShared(SegmentDictionary dictionary) {
+        shared = dictionary;
+    }
+
+    /**
+     * 经过共享字典, 未开启时原样返回
+     */
+    static String share(String segment) {
+        var dictionary = shared;
+        return dictionary == null || segment == null ? segment : dictionary.intern(segment);
+    }
+
+    /**
+     * 返回字典里和 segment 相同的 String, 没有时放入 segment 本身
+     */
+    public String intern(String segment) {
+        this.lookups.increment();
+        var stripe = this.stripes[(segment.hashCode() & 0x7FFFFFFF) % STRIPES];
+        synchronized (stripe) {
+            var reference = stripe.get(segment);
+            var existed = reference == null ? null : reference.get();
+            if (existed != null) {
+                this.hits.increment();
+                if (existed != segment) {
+                    this.savedBytes.add(sizeOf(segment));
+                }
+                return existed;
+            }
+            stripe.put(segment, new WeakReference<>(segment));
+            return segment;
+        }
+    }
+
+    /**
+     * 统计信息
+     *
+     * @param size       字典里还存活的名称数
+     * @param savedBytes 命中时被替换掉的重复 String 的估算大小 (累计值, 不扣除之后被回收的)
+     */
+    public static record Stats(int size, long lookups, long hits, long savedBytes) {}
+
+    public Stats stats() {
+        var size = 0;
+        for (var stripe : this.stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return new Stats(size, this.lookups.sum(), this.hits.sum(), this.savedBytes.sum());
+    }
+
+    /**
+     * 估算一个 String 占用的堆, 非 latin-1 的名称按 UTF-16 两个字节一个字符计算
+     */
+    private static long sizeOf(String segment) {
+        var latin1 = true;
+        for (var i = 0; i < segment.length() && latin1; i++) {
+            latin1 = segment.charAt(i) < 256;
+        }
+        var bytes = latin1 ? segment.length() : segment.length() * 2L;
+        return STRING_OVERHEAD + ((bytes + 7) & ~7L);
+    }
+
+}
@@ -1,57 +1,311 @@
 package link.tothetracker.lib.torrent.file;
 
+import link.tothetracker.lib.LibRuntimeException;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 
 /**
+ * 种子里的文件列表, 按列存储
+ *
+ * 路径拆成节点: 每个节点是一个路径分量, 记录名称在字符串表中的下标和父节点的下标,
+ * 相同的目录只存一次, 相同的名称只存一个 String; 文件只记录叶子节点和长度
+ *
+ * 节点按 T3tTree 分配 id 的顺序创建 (每个文件新出现的分量从叶子往上), 节点下标 + 1 就是 FileNode 的 id
+ *
+ * getContainer 和 T3tFile 的 path 都是按需生成的视图
+ *
  * @author t3link
  */
-@Getter
-@Setter
 @NoArgsConstructor
 public class T3tFiles {
 
-    private List<T3tFile> container = new ArrayList<>();
-
     /**
      * 是否是文件夹结构
      */
+    @Getter
+    @Setter
     private boolean directory;
 
     /**
      * 文件数量
      */
+    @Getter
     private int num;
 
     /**
      * 文件或者文件夹名称
      */
+    @Getter
+    @Setter
     private String name;
 
     /**
      * 文件树的根
      */
+    @Getter
+    @Setter
     private FileNode root;
 
+    // region 列存储
+
+    /**
+     * 字符串表
+     */
+    private String[] strings = new String[8];
+
+    private int stringCount;
+
+    /**
+     * 节点的名称在字符串表中的下标
+     */
+    private int[] segments = new int[8];
+
+    /**
+     * 父节点的下标, 顶层节点是 -1
+     */
+    private int[] parents = new int[8];
+
+    /**
+     * 节点的深度, 顶层节点是 1
+     */
+    private int[] depths = new int[8];
+
+    private int nodeCount;
+
+    /**
+     * 文件的叶子节点
+     */
+    private int[] leaves = new int[8];
+
+    private long[] lengths = new long[8];
+
+    /**
+     * 构建时的索引, compact 以后释放, 再 add 时重建
+     */
+    private Index index;
+
+    // endregion
+
     /**
      * 单文件构造
      */
     public T3tFiles(T3tFile file) {
-        this.container.add(file);
-        this.num = 1;
+        this.add(file);
     }
 
     public void add(T3tFile file) {
-        container.add(file);
-        num++;
+        var path = file.path();
+        if (path == null || path.isEmpty()) {
+            throw new LibRuntimeException("'path' is empty list!");
+        }
+        if (this.index == null) {
+            this.index = this.reindex();
+        }
+
+        // 从根往下找到已经存在的最长前缀
+        var parent = -1;
+        var depth = 0;
+        for (; depth < path.size(); depth++) {
+            var node = this.index.children.get(edge(parent, this.intern(path.get(depth))));
+            if (node == null) {
+                break;
+            }
+            parent = node;
+        }
+
+        var leaf = parent;
+        if (depth < path.size()) {
+            // 剩下的分量从叶子往上创建, 创建完再挂到父节点上
+            var first = this.nodeCount;
+            var count = path.size() - depth;
+            this.ensureNodes(first + count);
+            for (var i = 0; i < count; i++) {
+                var node = first + i;
+                var component = path.size() - 1 - i;
+                this.segments[node] = this.intern(path.get(component));
+                this.depths[node] = component + 1;
+                this.parents[node] = i == count - 1 ? parent : node + 1;
+            }
+            this.nodeCount += count;
+            for (var node = first + count - 1; node >= first; node--) {
+                this.index.children.put(edge(this.parents[node], this.segments[node]), node);
+            }
+            leaf = first;
+        }
+
+        if (this.num == this.leaves.length) {
+            this.leaves = Arrays.copyOf(this.leaves, Math.max(8, this.num * 2));
+            this.lengths = Arrays.copyOf(this.lengths, Math.max(8, this.num * 2));
+        }
+        this.leaves[this.num] = leaf;
+        this.lengths[this.num] = file.length();
+        this.num++;
     }
 
     public boolean isEmpty() {
-        return container.isEmpty();
+        return this.num == 0;
+    }
+
+    /**
+     * 所有文件, 只读的视图
+     */
+    public List<T3tFile> getContainer() {
+        return new AbstractList<>() {
+            @Override
+            public T3tFile get(int index) {
+                return T3tFiles.this.file(index);
+            }
+
+            @Override
+            public int size() {
+                return T3tFiles.this.num;
+            }
+        };
+    }
+
+    public void setContainer(List<T3tFile> container) {
+        this.strings = new String[8];
+        this.stringCount = 0;
+        this.segments = new int[8];
+        this.parents = new int[8];
+        this.depths = new int[8];
+        this.nodeCount = 0;
+        this.leaves = new int[8];
+        this.lengths = new long[8];
+        this.num = 0;
+        this.index = null;
+        for (var file : container) {
+            this.add(file);
+        }
+    }
+
+    public T3tFile file(int index) {
+        if (index < 0 || index >= this.num) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return new T3tFile(this.lengths[index], new PathView(this.leaves[index]));
+    }
+
+    /**
+     * 释放构建时的索引, 只保留列存储
+     */
+    public void compact() {
+        this.index = null;
+        this.strings = Arrays.copyOf(this.strings, this.stringCount);
+        this.segments = Arrays.copyOf(this.segments, this.nodeCount);
+        this.parents = Arrays.copyOf(this.parents, this.nodeCount);
+        this.depths = Arrays.copyOf(this.depths, this.nodeCount);
+        this.leaves = Arrays.copyOf(this.leaves, this.num);
+        this.lengths = Arrays.copyOf(this.lengths, this.num);
+    }
+
+    // region 给 T3tTree 按节点建树
+
+    int nodeCount() {
+        return this.nodeCount;
+    }
+
+    String name(int node) {
+        return this.strings[this.segments[node]];
+    }
+
+    int parent(int node) {
+        return this.parents[node];
+    }
+
+    int depth(int node) {
+        return this.depths[node];
+    }
+
+    int leaf(int file) {
+        return this.leaves[file];
+    }
+
+    long length(int file) {
+        return this.lengths[file];
+    }
+
+    // endregion
+
+    /**
+     * 字符串表和 (父节点, 名称) -> 节点 的索引
+     */
+    private static final class Index {
+        private final HashMap<String, Integer> strings = new HashMap<>();
+        private final HashMap<Long, Integer> children = new HashMap<>();
+    }
+
+    private Index reindex() {
+        var index = new Index();
+        for (var i = 0; i < this.stringCount; i++) {
+            index.strings.put(this.strings[i], i);
+        }
+        for (var node = 0; node < this.nodeCount; node++) {
+            index.children.put(edge(this.parents[node], this.segments[node]), node);
+        }
+        return index;
+    }
+
+    private int intern(String segment) {
+        var existed = this.index.strings.get(segment);
+        if (existed != null) {
+            return existed;
+        }
+        if (this.stringCount == this.strings.length) {
+            this.strings = Arrays.copyOf(this.strings, Math.max(8, this.stringCount * 2));
+        }
+        // 开启了共享字典时, 不同种子之间也只保存一份
+        this.strings[this.stringCount] = SegmentDictionary.share(segment);
+        this.index.strings.put(segment, this.stringCount);
+        return this.stringCount++;
+    }
+
+    private void ensureNodes(int capacity) {
+        if (capacity > this.segments.length) {
+            var length = Math.max(capacity, this.segments.length * 2);
+            this.segments = Arrays.copyOf(this.segments, length);
+            this.parents = Arrays.copyOf(this.parents, length);
+            this.depths = Arrays.copyOf(this.depths, length);
+        }
+    }
+
+    private static long edge(int parent, int segment) {
+        return ((long) parent << 32) | (segment & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 文件路径的视图, 名称直接取自字符串表
+     */
+    private final class PathView extends AbstractList<String> {
+
+        /**
+         * 从顶层到叶子的节点
+         */
+        private final int[] nodes;
+
+        private PathView(int leaf) {
+            this.nodes = new int[T3tFiles.this.depths[leaf]];
+            for (int node = leaf, i = this.nodes.length - 1; i >= 0; node = T3tFiles.this.parents[node], i--) {
+                this.nodes[i] = node;
+            }
+        }
+
+        @Override
+        public String get(int index) {
+            return T3tFiles.this.name(this.nodes[index]);
+        }
+
+        @Override
+        public int size() {
+            return this.nodes.length;
+        }
+
     }
 
 }
@@ -3,9 +3,10 @@ package link.tothetracker.lib.torrent.file;
 
 import link.tothetracker.lib.LibRuntimeException;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -28,31 +29,46 @@ public final class T3tTree {
      * 但是创建操作里会自动扩容到 paths 大小
      */
     public static FileNode tree(T3tFiles files) {
-        // 所有节点组成的节点池, 防止重复创建节点对象
-        var pools = new ArrayList<LinkedHashMap<String, FileNode>>();
+        // T3tFiles 里的节点已经去重, 并且按 id 的顺序排列, 直接一一对应
+        var count = files.nodeCount();
+        var nodes = new FileNode[count];
+        var gen = new IdGenerator();
+        for (var node = 0; node < count; node++) {
+            nodes[node] = FileNode.of(gen, null, files.name(node), files.depth(node));
+        }
+        // 指定叶子节点, 同一路径出现多次时以最后一次为准
+        for (var file = 0; file < files.getNum(); file++) {
+            nodes[files.leaf(file)].setLength(files.length(file));
+        }
+
+        // 子节点关联父节点, 按创建顺序 (每个文件从叶子往上), 和逐个文件建树时的顺序一致
+        // 深度为 1 的节点, 按创建顺序
+        var roots = new ArrayList<FileNode>();
+        for (var node = 0; node < count; node++) {
+            var parent = files.parent(node);
+            if (parent < 0) {
+                roots.add(nodes[node]);
+            } else {
+                nodes[parent].add(nodes[node]);
+            }
+        }
 
         // 是否是文件夹结构
         var directory = files.isDirectory();
 
-        var gen = new IdGenerator();
-        for (var file : files.getContainer()) {
-            build(file, gen, pools);
-        }
-
         // 找到深度为 1 的根节点
-        var pool0 = pools.get(0);
-        if (null == pool0 || pool0.size() == 0) {
+        if (roots.isEmpty()) {
             throw new LibRuntimeException("root file node not found!");
         }
 
-        if (!directory && pool0.size() > 1) {
+        if (!directory && roots.size() > 1) {
             throw new LibRuntimeException("single file only accept 1 root file node!");
         }
 
         // 封装一个虚拟的根节点, 如果为单文件, 根节点名称是 '.' , 如果是多文件, 节点名称是文件夹名称
         var rootName = directory ? files.getName() : ".";
         var virtualNode = FileNode.of(null, "", rootName, 0);
-        for (var root : pool0.values()) {
+        for (var root : roots) {
             virtualNode.add(root);
         }
         // 计算长度
@@ -60,79 +76,6 @@ public final class T3tTree {
         return virtualNode;
     }
 
-    /**
-     * 将一个文件的路径描述成树节点
-     */
-    private static void build(T3tFile file, IdGenerator gen,
-                              List<LinkedHashMap<String, FileNode>> pools) {
-        // 从叶子节点 -> 根节点
-        FileNode child = null;
-        var path = file.path();
-        for (var index = path.size() - 1;  index >= 0; index --) {
-            var node = pooled(gen, path, index + 1, pools);
-            // 指定叶子节点
-            if (index == path.size() - 1) {
-                node.setLength(file.length());
-            }
-            // 子节点关联父节点
-            if (child != null) {
-                node.add(child);
-            }
-            // 作为上一级的子节点
-            child = node;
-        }
-    }
-
-    /**
-     * 从节点池中检查取出(创建)节点
-     * 如果当前高度的节点在池中存在, 则直接取出
-     *
-     * @param gen               节点id生成器
-     * @param paths             文件名字, 对应文件夹或者文件名称
-     * @param depth             节点深度
-     * @param pools             节点池
-     */
-    private static FileNode pooled(IdGenerator gen, List<String> paths, int depth,
-                                   List<LinkedHashMap<String, FileNode>> pools) {
-        var name = paths.get(depth - 1);
-        var key = identify(paths, depth);
-        // 如果池为空 则直接创建
-        if (null == pools) {
-            return FileNode.of(gen, key, name, depth);
-        }
-
-        // 判断池中是否有当前高度的节点, 如果小于当前高度, 需要增长到此高度
-        while (depth > pools.size()) {
-            pools.add(new LinkedHashMap<>());
-        }
-
-        var pool1 = pools.get(depth - 1);
-        // 创建完的 非叶子节点 需要放入池中
-        return pool1.computeIfAbsent(
-                key, k -> FileNode.of(gen, k, name, depth)
-        );
-    }
-
-    /**
-     * 高度和文件夹名称不能决定一个文件夹, 因为可能存在同高度的同名文件夹
-     * @param paths     一个文件路径包含的列表
-     * @param depth     文件/文件夹在的深度
-     */
-    private static String identify(List<String> paths, int depth) {
-        var fullPathList = paths.subList(0, depth);
-        var key = new StringBuilder();
-        for (var idx = 0; idx < depth; idx ++) {
-            var path = fullPathList.get(idx);
-            // 生成 b-encode 编码来确定一个路径
-            key.append(path.length()).append(':').append(path);
-            if (idx != depth - 1) {
-                key.append(',');
-            }
-        }
-
-        return key.toString();
-    }
-
     /**
      * 递归格式化节点的大小
      */
@@ -157,56 +100,149 @@ public final class T3tTree {
      */
     public static String print(FileNode node) {
         var tree = new StringBuilder();
-        if (node.getDepth() == 0) {
-            tree.append(node.getName());
-            tree.append(" ");
-            tree.append(node.getSize());
-            tree.append("\n");
-        } else {
-            tree.append(padding(node));
-            tree.append(node.getName());
-            tree.append(" ");
-            tree.append(node.getSize());
-            tree.append("\n");
+        try {
+            print(node, tree, Limits.NONE);
+        } catch (IOException e) {
+            // StringBuilder 不会抛出
+            throw new IllegalStateException(e);
+        }
+        return tree.toString();
+    }
+
+    /**
+     * 打印文件树的限制, 用于大种子的预览
+     *
+     * @param maxLines    最多输出的行数, 超过时以 "..." 结尾
+     * @param maxDepth    最多展开的层数, 根节点的子节点是第 1 层
+     * @param maxChildren 每个文件夹最多列出的子节点数, 其余的折叠成一行
+     */
+    public static record Limits(int maxLines, int maxDepth, int maxChildren) {
+
+        public static final Limits NONE = new Limits(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+        public Limits {
+            if (maxLines < 0 || maxDepth < 0 || maxChildren < 0) {
+                throw new IllegalArgumentException("limits must >= 0!");
+            }
         }
 
-        if (node.getChildren() == null) {
-            return tree.toString();
+    }
+
+    /**
+     * 流式打印文件树, 一次遍历, 不递归
+     *
+     * 前缀按层维护在一个栈里, 每个节点只追加一次自己这一层的连接符; 被限制掉的部分输出为
+     * "|--- ... (n more)"
+     */
+    public static void print(FileNode node, Appendable out, Limits limits) throws IOException {
+        var lines = 0;
+        if (limits.maxLines <= 0) {
+            out.append("...\n");
+            return;
         }
-        for (var child : node.getChildren()) {
-            tree.append(print(child));
+        // 从子树开始打印时, 前缀和在整棵树里一样
+        var prefix = prefix(node);
+        line(out, prefix, node);
+        lines++;
+        if (node.getDepth() != 0) {
+            prefix.append(node.last() ? "    " : "|   ");
         }
 
-        return tree.toString();
+        // 各层还没有输出的子节点, 以及对应的前缀长度
+        var stack = new ArrayDeque<Frame>();
+        if (node.extended()) {
+            stack.push(new Frame(node.getChildren(), prefix.length(), limits.maxDepth >= 1 ? limits : null));
+        }
+        while (!stack.isEmpty()) {
+            var frame = stack.peek();
+            if (frame.index == frame.shown) {
+                stack.pop();
+                var hidden = frame.children.size() - frame.shown;
+                if (hidden > 0) {
+                    if (lines++ == limits.maxLines) {
+                        out.append("...\n");
+                        return;
+                    }
+                    out.append(prefix).append("|--- ... (").append(String.valueOf(hidden)).append(" more)\n");
+                }
+                prefix.setLength(frame.prefix);
+                continue;
+            }
+
+            var child = frame.children.get(frame.index++);
+            if (lines++ == limits.maxLines) {
+                out.append("...\n");
+                return;
+            }
+            line(out, prefix, child);
+
+            if (child.extended()) {
+                var last = frame.index == frame.children.size();
+                var length = prefix.length();
+                prefix.append(last ? "    " : "|   ");
+                stack.push(new Frame(child.getChildren(), length, stack.size() + 1 <= limits.maxDepth ? limits : null));
+            }
+        }
     }
 
     /**
-     * 占位符美化
+     * 节点在整棵树里的前缀, 不包括节点自己的连接符, 每个祖先只访问一次
      */
-    private static String padding(FileNode node) {
-        var builder = new StringBuilder();
+    private static StringBuilder prefix(FileNode node) {
         var depth = node.getDepth();
-        var brothers = new HashSet<Integer>();
+        var levels = new String[Math.max(depth, 1)];
+        Arrays.fill(levels, "    ");
         // 当他的父亲有兄弟的时候 | 连接符
-        var parent = node.getParent();
-        while (parent != null) {
+        for (var parent = node.getParent(); parent != null; parent = parent.getParent()) {
             var grand = parent.getParent();
-            if (grand != null && grand.extended() && !parent.last()) {
-                brothers.add(parent.getDepth());
+            var level = parent.getDepth();
+            if (grand != null && grand.extended() && !parent.last() && level > 0 && level < depth) {
+                levels[level] = "|   ";
             }
-            parent = parent.getParent();
         }
 
-        for(var i = 1; i < depth; ++i) {
-            if (brothers.contains(i)) {
-                builder.append("|   ");
-            } else {
-                builder.append("    ");
-            }
+        var prefix = new StringBuilder();
+        for (var i = 1; i < depth; i++) {
+            prefix.append(levels[i]);
+        }
+        return prefix;
+    }
+
+    /**
+     * 反序列化的节点没有 depth, 和根节点一样不缩进
+     */
+    private static void line(Appendable out, CharSequence prefix, FileNode node) throws IOException {
+        if (node.getDepth() != 0) {
+            out.append(prefix).append("|--- ");
+        }
+        out.append(node.getName()).append(" ").append(node.getSize()).append("\n");
+    }
+
+    /**
+     * 一个文件夹的打印进度
+     */
+    private static final class Frame {
+
+        private final List<FileNode> children;
+
+        /**
+         * 进入这个文件夹之前的前缀长度
+         */
+        private final int prefix;
+
+        /**
+         * 列出的子节点数, 超出层数时为 0
+         */
+        private final int shown;
+
+        private int index;
+
+        private Frame(List<FileNode> children, int prefix, Limits limits) {
+            this.children = children;
+            this.prefix = prefix;
+            this.shown = limits == null ? 0 : Math.min(children.size(), limits.maxChildren);
         }
 
-        builder.append("|--- ");
-        return builder.toString();
     }
 
 }
@@ -0,0 +1,119 @@
+package link.tothetracker.lib.torrent.spec;
+
+import link.tothetracker.lib.LibRuntimeException;
+import link.tothetracker.lib.torrent.T3tInfo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 批量并发解析
+ *
+ * 固定数量的工作线程从输入里依次领取任务, 不会一次性提交成千上万个任务;
+ * 结果放进有界队列, 由调用线程逐个交给回调, 回调不需要线程安全, 处理得慢时工作线程会等待
+ *
+ * 单个种子解析失败只记录在它自己的结果里, 不影响其他种子; 但 Error (OOM 、 StackOverflow ...) 不当作解析失败,
+ * 会关闭线程池并在调用线程里重新抛出
+ *
+ * @author t3link
+ */
+final class BatchReader<T> {
+
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    private final List<T> inputs;
+
+    private final Function<T, T3tInfo> reader;
+
+    private final int parallelism;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final BlockingQueue<ParseResult<T>> results;
+
+    /**
+     * 工作线程遇到的 Error, 放进队列的 stop 通知调用线程
+     */
+    private volatile Error fatal;
+
+    private final ParseResult<T> stop = new ParseResult<>(-1, null, null, null);
+
+    BatchReader(Collection<T> inputs, Function<T, T3tInfo> reader, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must > 0!");
+        }
+        this.inputs = new ArrayList<>(inputs);
+        this.reader = reader;
+        this.parallelism = Math.min(parallelism, Math.max(this.inputs.size(), 1));
+        this.results = new ArrayBlockingQueue<>(this.parallelism * 2);
+    }
+
+    /**
+     * 按完成的顺序把结果交给 consumer, 所有输入处理完以后返回
+     */
+    void read(Consumer<ParseResult<T>> consumer) {
+        if (this.inputs.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(this.parallelism, runnable -> {
+            var thread = new Thread(runnable, "t3t-batch-" + THREADS.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (var i = 0; i < this.parallelism; i++) {
+                executor.execute(this::work);
+            }
+            for (var i = 0; i < this.inputs.size(); i++) {
+                var result = this.results.take();
+                if (result == this.stop) {
+                    throw this.fatal;
+                }
+                consumer.accept(result);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LibRuntimeException("批量解析被中断", e);
+        } finally {
+            // 回调或者工作线程抛出异常时, 让还在等待的工作线程退出
+            executor.shutdownNow();
+        }
+    }
+
+    private void work() {
+        int index;
+        while ((index = this.next.getAndIncrement()) < this.inputs.size()) {
+            var input = this.inputs.get(index);
+            ParseResult<T> result;
+            try {
+                result = new ParseResult<>(index, input, this.reader.apply(input), null);
+            } catch (LibRuntimeException e) {
+                result = new ParseResult<>(index, input, null, e);
+            } catch (RuntimeException e) {
+                result = new ParseResult<>(index, input, null, new LibRuntimeException("解析异常", e));
+            } catch (Error e) {
+                this.fatal = e;
+                result = this.stop;
+            }
+
+            try {
+                this.results.put(result);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (result == this.stop) {
+                return;
+            }
+        }
+    }
+
+}
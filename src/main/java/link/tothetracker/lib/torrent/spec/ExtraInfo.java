@@ -1,5 +1,6 @@
 package link.tothetracker.lib.torrent.spec;
 
+import link.tothetracker.lib.encode.BeEncoder;
 import link.tothetracker.lib.encode.type.AbstractBeValue;
 import link.tothetracker.lib.encode.type.DictionaryBeValue;
 import lombok.Getter;
@@ -8,7 +9,6 @@ import lombok.Setter;
 import lombok.ToString;
 import org.apache.commons.collections4.MapUtils;
 
-import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 /**
@@ -26,13 +26,24 @@ public final class ExtraInfo extends AbstractBeValue {
     private final Map<String, String> extra;
 
     @Override
-    protected byte[] encode() {
-        if (MapUtils.isEmpty(this.extra)) {
-            return "de".getBytes(StandardCharsets.UTF_8);
-        }
+    protected void encode(BeEncoder encoder) {
+        this.dict().write(encoder);
+    }
+
+    @Override
+    protected int measure() {
+        return this.dict().encodedLength();
+    }
+
+    /**
+     * 按 extra 构建 site info 的 dictionary, 每次调用都重新构建
+     */
+    DictionaryBeValue dict() {
         var dict = new DictionaryBeValue();
-        extra.forEach((key, value) -> dict.put(Key.build(key), Key.build(value)));
-        return dict.write();
+        if (MapUtils.isNotEmpty(this.extra)) {
+            extra.forEach((key, value) -> dict.put(Key.build(key), Key.build(value)));
+        }
+        return dict;
     }
 
 }
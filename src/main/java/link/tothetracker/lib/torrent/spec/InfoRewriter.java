@@ -0,0 +1,318 @@
+package link.tothetracker.lib.torrent.spec;
+
+import link.tothetracker.lib.encode.BeEncoder;
+import link.tothetracker.lib.encode.BeReader;
+import link.tothetracker.lib.encode.BeToken;
+import link.tothetracker.lib.encode.type.AbstractBeValue;
+import link.tothetracker.lib.encode.type.ByteStringBeValue;
+import link.tothetracker.lib.encode.type.DictionaryBeValue;
+import link.tothetracker.lib.encode.type.NumberBeValue;
+import link.tothetracker.lib.torrent.T3tInfo;
+import link.tothetracker.lib.torrent.file.T3tFile;
+import link.tothetracker.lib.torrent.file.T3tFiles;
+import org.apache.commons.codec.binary.Hex;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 流式改写 info, 不构造 AbstractBeValue 树
+ *
+ * 和 LibParser 对 info 的处理完全一致: 去掉未知的字段和文件里的 md5sum 等附加字段, 追加 private 和 source,
+ * 边读边写边计算 hash, 只过一遍数据
+ *
+ * 只处理 key 严格有序的输入 (这样才能按顺序写出), 其他情况以及任何校验失败都返回 null,
+ * 由调用方回退到构造树的方式, 保证结果和错误信息都和原来一样
+ *
+ * @author t3link
+ */
+final class InfoRewriter {
+
+    /**
+     * 回退到构造树的方式, 不需要堆栈
+     */
+    private static final class Fallback extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private Fallback() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final Fallback FALLBACK = new Fallback();
+
+    private final ByteBuffer buffer;
+
+    private final BeReader reader;
+
+    private final byte[] source;
+
+    private Rewritten info;
+
+    private InfoRewriter(ByteBuffer buffer, String source) {
+        this.buffer = buffer;
+        this.reader = new BeReader(buffer);
+        this.source = source.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param buffer 完整的种子文件, 不会修改 position
+     * @return 改写的结果, 不能流式处理时返回 null
+     */
+    static T3tInfo rewrite(ByteBuffer buffer, String source) {
+        try {
+            return new InfoRewriter(buffer.duplicate(), source).rewrite();
+        } catch (RuntimeException | IOException e) {
+            return null;
+        }
+    }
+
+    private T3tInfo rewrite() throws IOException {
+        if (this.reader.next() != BeToken.DICTIONARY) {
+            throw FALLBACK;
+        }
+
+        // 顶层只用到 encoding 、 name.utf-8 和 info
+        var root = new DictionaryBeValue();
+        ByteBuffer previous = null;
+        while (this.reader.next() == BeToken.KEY) {
+            var key = this.reader.bytes();
+            previous = this.ordered(previous, key);
+
+            var symbol = Key.SYMBOLS.lookup(key);
+            if (symbol == Key.INFO) {
+                this.info();
+            } else if (symbol == Key.ENCODING) {
+                root.put(Key.ENCODING, this.scalar());
+            } else if (symbol == Key.NAME_UTF8) {
+                this.reader.skipValue();
+                root.put(Key.NAME_UTF8, new NumberBeValue(1L));
+            } else {
+                this.reader.skipValue();
+            }
+        }
+        if (this.info == null) {
+            throw FALLBACK;
+        }
+
+        // 和 LibParser 一样, 先确定文件编码
+        if (!LibParser.supported(root)) {
+            throw FALLBACK;
+        }
+
+        var files = LibParser.files(this.info.files, this.info.length, this.info.name, this.info.files != null);
+        return new T3tInfo(this.info.bytes, Hex.encodeHexString(this.info.hash), files);
+    }
+
+    private void info() throws IOException {
+        if (this.reader.next() != BeToken.DICTIONARY) {
+            throw FALLBACK;
+        }
+
+        // 输出不会比 info 的原始片段加上追加的字段更长, 原始片段之后顶层一般也没有多少内容了
+        var capacity = this.buffer.remaining() - this.reader.position() + 1
+                + Key.PRIVATE.encodedLength() + 3
+                + Key.SOURCE.encodedLength() + BeEncoder.digits(this.source.length) + 1 + this.source.length;
+        var output = ByteBuffer.allocate((int) Math.min(capacity, Integer.MAX_VALUE));
+        var encoder = new BeEncoder(output);
+        var digest = LibParser.SHA1.get();
+        digest.reset();
+        encoder.setDigest(digest);
+
+        var result = new Rewritten();
+        var existed = 0;
+        var flag = 0;
+
+        encoder.startDictionary();
+        ByteBuffer previous = null;
+        while (this.reader.next() == BeToken.KEY) {
+            var key = this.reader.bytes();
+            previous = this.ordered(previous, key);
+
+            // 判断是否是必须的
+            var symbol = Key.SYMBOLS.lookup(key);
+            var field = symbol == null ? null : LibParser.INFO_FIELDS.get(symbol);
+            if (field == null) {
+                this.reader.skipValue();
+                continue;
+            }
+
+            existed++;
+            encoder.key(key);
+            switch (field) {
+                case PIECE_LENGTH -> {
+                    var value = this.scalar();
+                    LibParser.PIECE_LENGTH.validate(value);
+                    value.write(encoder);
+                }
+                case PIECES -> {
+                    var value = this.scalar();
+                    LibParser.PIECES.validate(value);
+                    value.write(encoder);
+                }
+                case NAME -> {
+                    var value = this.scalar();
+                    result.name = LibParser.NAME.validate(value);
+                    value.write(encoder);
+                }
+                case LENGTH -> {
+                    var value = this.scalar();
+                    result.length = LibParser.LENGTH.validate(value);
+                    value.write(encoder);
+                    flag++;
+                }
+                case FILES -> {
+                    result.files = this.files(encoder);
+                    flag++;
+                }
+                // v2 / hybrid 还要校验 piece layers, 走构造树的方式
+                case META_VERSION, FILE_TREE -> throw FALLBACK;
+                default -> throw new IllegalStateException();
+            }
+        }
+
+        // 判断是否都包含了必须的字段
+        if (existed != 4 || flag != 1) {
+            throw FALLBACK;
+        }
+
+        // 保留的字段都排在 private 之前, 直接追加在末尾
+        Key.PRIVATE.write(encoder);
+        encoder.number(1L);
+        Key.SOURCE.write(encoder);
+        encoder.bytes(this.source);
+        encoder.end();
+        encoder.flush();
+
+        result.hash = digest.digest();
+        result.bytes = output.position() == output.capacity()
+                ? output.array()
+                : Arrays.copyOf(output.array(), output.position());
+        this.info = result;
+    }
+
+    private T3tFiles files(BeEncoder encoder) throws IOException {
+        if (this.reader.next() != BeToken.LIST) {
+            throw FALLBACK;
+        }
+
+        var files = new T3tFiles();
+        encoder.startList();
+        while (this.reader.next() != BeToken.END) {
+            files.add(this.file(encoder));
+        }
+        encoder.end();
+
+        if (files.isEmpty()) {
+            throw FALLBACK;
+        }
+        return files;
+    }
+
+    private T3tFile file(BeEncoder encoder) throws IOException {
+        if (this.reader.token() != BeToken.DICTIONARY) {
+            throw FALLBACK;
+        }
+
+        List<String> path = null;
+        var length = -1L;
+        encoder.startDictionary();
+        ByteBuffer previous = null;
+        while (this.reader.next() == BeToken.KEY) {
+            var key = this.reader.bytes();
+            previous = this.ordered(previous, key);
+
+            // 去除 md5 等无用字段
+            var symbol = Key.SYMBOLS.lookup(key);
+            if (symbol == Key.LENGTH) {
+                var value = this.scalar();
+                length = LibParser.LENGTH.validate(value);
+                encoder.key(key);
+                value.write(encoder);
+            } else if (symbol == Key.PATH) {
+                encoder.key(key);
+                path = this.path(encoder);
+            } else {
+                this.reader.skipValue();
+            }
+        }
+        encoder.end();
+
+        if (path == null || length < 0L) {
+            throw FALLBACK;
+        }
+        return new T3tFile(length, path);
+    }
+
+    private List<String> path(BeEncoder encoder) throws IOException {
+        if (this.reader.next() != BeToken.LIST) {
+            throw FALLBACK;
+        }
+
+        var paths = new ArrayList<String>();
+        encoder.startList();
+        while (this.reader.next() != BeToken.END) {
+            var value = this.current();
+            paths.add(LibParser.NAME.validate(value));
+            value.write(encoder);
+        }
+        encoder.end();
+
+        if (paths.isEmpty()) {
+            throw FALLBACK;
+        }
+        return paths;
+    }
+
+    /**
+     * 读取下一个 byte string / number, 是容器时回退
+     */
+    private AbstractBeValue scalar() throws IOException {
+        this.reader.next();
+        return this.current();
+    }
+
+    private AbstractBeValue current() {
+        return switch (this.reader.token()) {
+            case BYTES -> ByteStringBeValue.view(this.reader.bytes());
+            case NUMBER -> new NumberBeValue(this.reader.number());
+            default -> throw FALLBACK;
+        };
+    }
+
+    /**
+     * key 必须严格递增 (按无符号字节), 否则回退
+     */
+    private ByteBuffer ordered(ByteBuffer previous, ByteBuffer key) {
+        if (previous != null) {
+            var index = previous.mismatch(key);
+            if (index < 0) {
+                throw FALLBACK;
+            }
+            var greater = index == previous.remaining()
+                    || (index < key.remaining()
+                    && Byte.toUnsignedInt(key.get(key.position() + index))
+                    > Byte.toUnsignedInt(previous.get(previous.position() + index)));
+            if (!greater) {
+                throw FALLBACK;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * info 的改写结果
+     */
+    private static final class Rewritten {
+        private byte[] bytes;
+        private byte[] hash;
+        private T3tFiles files;
+        private long length = -1L;
+        private String name = "";
+    }
+
+}
@@ -1,5 +1,6 @@
 package link.tothetracker.lib.torrent.spec;
 
+import link.tothetracker.lib.encode.BeSymbolTable;
 import link.tothetracker.lib.encode.type.ByteStringBeValue;
 
 /**
@@ -104,6 +105,43 @@ interface Key {
      */
     ByteStringBeValue MD5_SUM = build("md5sum");
 
+    /**
+     * (optional) variable length string. When present the characters each represent a file attribute.
+     * l = symlink, x = executable, h = hidden, p = padding file.
+     */
+    ByteStringBeValue ATTR = build("attr");
+
+    //////// BEP 52, v2 / hybrid
+
+    /**
+     * An integer value, set to 2 to indicate compatibility with the current revision of this specification.
+     */
+    ByteStringBeValue META_VERSION = build("meta version");
+
+    /**
+     * A tree of dictionaries where dictionary keys represent UTF-8 encoded path elements.
+     * Entries with zero-length keys describe the properties of the composed path at that point.
+     */
+    ByteStringBeValue FILE_TREE = build("file tree");
+
+    /**
+     * For each file in the file tree that is larger than the piece size it contains one string value.
+     * The keys are the merkle roots while the values consist of concatenated hashes of one layer within that
+     * merkle tree.
+     */
+    ByteStringBeValue PIECE_LAYERS = build("piece layers");
+
+    /**
+     * For non-empty files this is the the root hash of a merkle tree with a branching factor of 2,
+     * constructed from 16KiB blocks of the file.
+     */
+    ByteStringBeValue PIECES_ROOT = build("pieces root");
+
+    /**
+     * file tree 中描述文件属性的空 key
+     */
+    ByteStringBeValue FILE_PROPERTIES = build("");
+
 
     //////// 以下是自定义的一些 key
 
@@ -112,6 +150,16 @@ interface Key {
      */
     ByteStringBeValue SITE_INFO = build("site info");
 
+    /**
+     * 解码时把以上 key 解析成同一个实例, 比较时直接走引用相等
+     */
+    BeSymbolTable SYMBOLS = BeSymbolTable.of(
+            INFO, ANNOUNCE, ANNOUNCE_LIST, ENCODING, CREATION, COMMENT, CREATED_BY,
+            PIECE_LENGTH, PIECES, SOURCE, PRIVATE, NAME, NAME_UTF8, LENGTH, FILES,
+            PATH, PATH_UTF8, MD5_SUM, ATTR, META_VERSION, FILE_TREE, PIECE_LAYERS, PIECES_ROOT,
+            FILE_PROPERTIES, SITE_INFO
+    );
+
     /**
      * 构造函数
      *
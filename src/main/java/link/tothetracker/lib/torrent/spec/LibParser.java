@@ -3,6 +3,7 @@ package link.tothetracker.lib.torrent.spec;
 import link.tothetracker.lib.LibRuntimeException;
 import link.tothetracker.lib.constant.ByteUnit;
 import link.tothetracker.lib.encode.BeDecoder;
+import link.tothetracker.lib.encode.BeEncoder;
 import link.tothetracker.lib.encode.type.AbstractBeValue;
 import link.tothetracker.lib.encode.type.ByteStringBeValue;
 import link.tothetracker.lib.encode.type.DictionaryBeValue;
@@ -12,17 +13,31 @@ import link.tothetracker.lib.torrent.T3tInfo;
 import link.tothetracker.lib.torrent.file.T3tFile;
 import link.tothetracker.lib.torrent.file.T3tFiles;
 import link.tothetracker.lib.torrent.file.T3tTree;
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.collections4.CollectionUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * @author t3link
@@ -31,25 +46,72 @@ public final class LibParser {
 
     private LibParser() {}
 
+    /**
+     * 每个线程复用一个 SHA-1 实例
+     */
+    static final ThreadLocal<MessageDigest> SHA1 = ThreadLocal.withInitial(DigestUtils::getSha1Digest);
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(DigestUtils::getSha256Digest);
+
     /**
      * 解析一个种子为数据库存储的格式
+     *
+     * 如果能提前知道输入的大小, 一次性读入数组(或者映射文件)后走 buffer 解码, 否则走带缓冲的流解码
      */
     public static T3tInfo read(InputStream in, String source) {
         try (in) {
-            var value = BeDecoder.decode(in);
-            if (!(value instanceof DictionaryBeValue dict)) {
-                throw new LibRuntimeException("invalid torrent file!");
+            if (in instanceof FileInputStream stream) {
+                return read(stream.getChannel(), source);
+            }
+            if (in instanceof ByteArrayInputStream) {
+                return read(ByteBuffer.wrap(in.readAllBytes()), source);
             }
+            return read(new BeDecoder(in), source);
+        } catch (LibRuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new LibRuntimeException("解析异常", e);
+        }
+    }
 
-            // 首先确定文件编码
-            if (!supported(dict)) {
-                throw new LibRuntimeException("only utf-8 encoding supported!");
+    /**
+     * 解析一个已经完整读入内存的种子
+     */
+    public static T3tInfo read(byte[] data, String source) {
+        try {
+            return read(ByteBuffer.wrap(data), source);
+        } catch (LibRuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new LibRuntimeException("解析异常", e);
+        }
+    }
+
+    /**
+     * 解析磁盘上的种子文件, 通过内存映射直接在映射区上解码
+     */
+    public static T3tInfo read(Path path, String source) {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel, source);
+        } catch (LibRuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new LibRuntimeException("解析异常", e);
+        }
+    }
+
+    /**
+     * 从 channel 当前的 position 映射到文件末尾并解码, 不关闭 channel
+     */
+    public static T3tInfo read(FileChannel channel, String source) {
+        try {
+            var position = channel.position();
+            var size = channel.size() - position;
+            if (size > Integer.MAX_VALUE) {
+                throw new LibRuntimeException("torrent file too large!");
             }
-            // 种子 info
-            var info = dict.get(Key.INFO);
-            var files = INFO.validate(info);
-            // 生成本站的 hash
-            return hash(info,source, files);
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            return read(buffer, source);
         } catch (LibRuntimeException e) {
             throw e;
         } catch (Exception e) {
@@ -57,33 +119,124 @@ public final class LibParser {
         }
     }
 
+    /**
+     * 解析一个已经解码的种子, 比如由 BePushDecoder / BeSubscriber 分片解码得到的结果
+     */
+    public static T3tInfo read(AbstractBeValue value, String source) {
+        try {
+            return parse(value, source);
+        } catch (LibRuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new LibRuntimeException("解析异常", e);
+        }
+    }
+
+    /**
+     * 完整在内存里的输入先尝试流式改写 info, 不能流式处理时再构造树
+     */
+    private static T3tInfo read(ByteBuffer buffer, String source) throws IOException {
+        var info = InfoRewriter.rewrite(buffer, source);
+        if (info != null) {
+            return info;
+        }
+        return read(new BeDecoder(buffer), source);
+    }
+
+    private static T3tInfo read(BeDecoder decoder, String source) throws IOException {
+        // 顶层只用到 encoding 、 name.utf-8 和 info, 其他的值不需要解码
+        decoder.setLazy(true);
+        decoder.setSymbols(Key.SYMBOLS);
+        return parse(decoder.decode(), source);
+    }
+
+    private static T3tInfo parse(AbstractBeValue value, String source) {
+        if (!(value instanceof DictionaryBeValue dict)) {
+            throw new LibRuntimeException("invalid torrent file!");
+        }
+
+        // 首先确定文件编码
+        if (!supported(dict)) {
+            throw new LibRuntimeException("only utf-8 encoding supported!");
+        }
+        // 种子 info
+        var info = dict.get(Key.INFO);
+        var layout = INFO.validate(info);
+        if (layout.version() == 1) {
+            // 生成本站的 hash
+            return hash(info, source, layout.files());
+        }
+
+        // v2 / hybrid 还需要校验 piece layers
+        var layers = PieceLayers.verify(dict.get(Key.PIECE_LAYERS), layout.pieceLength(), layout.roots());
+        return hash(info, source, layout, layers);
+    }
+
+    /**
+     * 并发批量解析磁盘上的种子文件, 工作线程数等于 CPU 核数
+     *
+     * @return 和输入顺序一致的结果, 单个种子解析失败不影响其他种子
+     */
+    public static List<ParseResult<Path>> readAll(Collection<Path> paths, String source) {
+        var results = new ArrayList<ParseResult<Path>>(Collections.nCopies(paths.size(), null));
+        readAll(paths, source, result -> results.set(result.index(), result));
+        return results;
+    }
+
+    /**
+     * 并发批量解析磁盘上的种子文件, 每解析完一个就在调用线程里交给 consumer
+     */
+    public static void readAll(Collection<Path> paths, String source, Consumer<ParseResult<Path>> consumer) {
+        new BatchReader<>(paths, path -> read(path, source), Runtime.getRuntime().availableProcessors())
+                .read(consumer);
+    }
+
+    /**
+     * 并发批量解析, 输入流在工作线程里才打开, 同时打开的数量不超过 parallelism
+     *
+     * @param opener 打开输入流, 解析完会被关闭
+     */
+    public static <T> void readAll(Collection<T> inputs, Function<T, InputStream> opener, String source,
+                                   int parallelism, Consumer<ParseResult<T>> consumer) {
+        new BatchReader<>(inputs, input -> read(opener.apply(input), source), parallelism).read(consumer);
+    }
+
     /**
      * 重新生成种子文件
+     *
+     * 同一个种子会被反复下载时, 直接缓存 TorrentTemplate.compile(info) 的结果
      */
     public static byte[] write(T3tInfo info, ExtraInfo extra) {
-        // header announce 、 create by 、encoding
-        var fields = new TreeMap<ByteStringBeValue, AbstractBeValue>();
-        fields.put(Key.ANNOUNCE,
-                new ByteStringBeValue(extra.getAnnounce())
-        );
-        fields.put(Key.ENCODING,
-                new ByteStringBeValue(StandardCharsets.UTF_8.name())
-        );
-
-        // info 域直接克隆现成的 bytes
-        var dict = new DictionaryBeValue();
-        dict.clone(info.bytes());
-        fields.put(Key.INFO, dict);
-
-        // 站点的用户信息等
-        fields.put(Key.SITE_INFO, extra);
-        var root = new DictionaryBeValue(fields);
-        return root.write();
+        return TorrentTemplate.compile(info).write(extra);
+    }
+
+    /**
+     * 重新生成种子文件, 直接 gathering write 到 channel (比如下载请求的 socket), info 不再拷贝一份
+     *
+     * 模板由调用方用 TorrentTemplate.compile(info, true) 编译并按自己的策略缓存 (比如按 info-hash),
+     * 这样同一个种子的下载共用一份 direct 内存, 不会每次请求都分配
+     *
+     * @param channel 必须是阻塞模式, 见 {@link TorrentTemplate#write(ExtraInfo, GatheringByteChannel)}
+     * @return 写出的字节数
+     */
+    public static long write(TorrentTemplate template, ExtraInfo extra, GatheringByteChannel channel) {
+        try {
+            return template.write(extra, channel);
+        } catch (IOException e) {
+            throw new LibRuntimeException("写入异常", e);
+        }
+    }
+
+    /**
+     * 重新生成的种子文件的字节数, 不实际编码, 可以用作 Content-Length
+     */
+    public static int length(T3tInfo info, ExtraInfo extra) {
+        return TorrentTemplate.compile(info).length(extra);
     }
 
     // region 基本方法
 
-    private static boolean supported(DictionaryBeValue dict) {
+    static boolean supported(DictionaryBeValue dict) {
         var bev = dict.get(Key.NAME_UTF8);
         if (Objects.nonNull(bev)) {
             return false;
@@ -116,18 +269,52 @@ public final class LibParser {
         dict.put(Key.PRIVATE, new NumberBeValue(1L));
         // 追加站点私有属性 防止一种多上报 tracker
         dict.put(Key.SOURCE, new ByteStringBeValue(source.getBytes(StandardCharsets.UTF_8)));
-        var data = dict.write();
-        var hash = DigestUtils.sha1Hex(data);
-        return new T3tInfo(data, hash, files);
+        // 编码的同时计算 hash
+        var digest = BeEncoder.digest(dict, SHA1.get(), true);
+        return new T3tInfo(digest.bytes(), Hex.encodeHexString(digest.hash()), files);
+    }
+
+    /**
+     * v2 / hybrid 种子, 一次编码同时计算两种 hash
+     */
+    private static T3tInfo hash(AbstractBeValue bev, String source, InfoLayout layout, DictionaryBeValue layers) {
+        var dict = (DictionaryBeValue) bev;
+        dict.put(Key.PRIVATE, new NumberBeValue(1L));
+        dict.put(Key.SOURCE, new ByteStringBeValue(source.getBytes(StandardCharsets.UTF_8)));
+
+        var data = new byte[dict.encodedLength()];
+        var encoder = new BeEncoder(ByteBuffer.wrap(data));
+        var sha256 = SHA256.get();
+        sha256.reset();
+        var sha1 = SHA1.get();
+        sha1.reset();
+        if (layout.hybrid()) {
+            encoder.setDigest(sha1, sha256);
+        } else {
+            encoder.setDigest(sha256);
+        }
+        encoder.write(dict);
+        encoder.flush();
+
+        var hashV2 = sha256.digest();
+        // 纯 v2 种子在 tracker 上使用截断到 20 字节的 SHA-256
+        var hash = layout.hybrid() ? sha1.digest() : Arrays.copyOf(hashV2, 20);
+        return new T3tInfo(data, Hex.encodeHexString(hash), layout.files(),
+                Hex.encodeHexString(hashV2), layers == null ? null : layers.write());
     }
 
-    private static T3tFile file(AbstractBeValue bev) {
+    /**
+     * @param hybrid hybrid 种子需要保留 attr, 否则客户端会把 padding 文件当成普通文件
+     * @return padding 文件返回 null
+     */
+    private static T3tFile file(AbstractBeValue bev, boolean hybrid) {
         // 列表中的 File 元素
         if (!(bev instanceof DictionaryBeValue dict)) {
             throw new LibRuntimeException("'files' is not List of Dictionaries!");
         }
         List<String> path = Collections.emptyList();
         var length = -1L;
+        var padding = false;
         // File 中的键值对
         var iterator = dict.iterator();
         while (iterator.hasNext()) {
@@ -141,6 +328,11 @@ public final class LibParser {
             } else if (Key.PATH.equals(key)) {
                 // check
                 path = PATH.validate(value);
+            } else if (hybrid && Key.ATTR.equals(key)) {
+                if (!(value instanceof ByteStringBeValue attr)) {
+                    throw new LibRuntimeException("'attr' is not Byte Strings!");
+                }
+                padding = attr.toString().indexOf('p') >= 0;
             } else {
                 iterator.remove();
             }
@@ -153,14 +345,91 @@ public final class LibParser {
             throw new LibRuntimeException("'length' is invalid");
         }
 
-        return new T3tFile(length, path);
+        return padding ? null : new T3tFile(length, path);
+    }
+
+    /**
+     * v2 的 file tree, 按 key 的顺序展开成文件列表
+     *
+     * @param prefix 当前节点的路径
+     */
+    private static void tree(AbstractBeValue bev, List<String> prefix, T3tFiles files,
+                             List<PieceLayers.FileRoot> roots) {
+        if (!(bev instanceof DictionaryBeValue dict)) {
+            throw new LibRuntimeException("'file tree' is not Dictionary!");
+        }
+        if (dict.keys().isEmpty()) {
+            throw new LibRuntimeException("'file tree' is empty!");
+        }
+
+        var iterator = dict.iterator();
+        while (iterator.hasNext()) {
+            var entry = iterator.next();
+            var name = NAME.validate(entry.getKey());
+            var path = new ArrayList<>(prefix);
+            path.add(name);
+
+            if (!(entry.getValue() instanceof DictionaryBeValue child)) {
+                throw new LibRuntimeException("'file tree' is not Dictionary!");
+            }
+            var properties = child.get(Key.FILE_PROPERTIES);
+            if (properties == null) {
+                // 目录
+                tree(child, path, files, roots);
+                continue;
+            }
+
+            // 文件, 只有一个空 key
+            if (child.keys().size() != 1) {
+                throw new LibRuntimeException("'file tree' is invalid!");
+            }
+            var root = fileProperties(properties);
+            files.add(new T3tFile(root.length(), path));
+            roots.add(root);
+        }
+    }
+
+    /**
+     * file tree 中文件的属性, 只保留 length 和 pieces root
+     */
+    private static PieceLayers.FileRoot fileProperties(AbstractBeValue bev) {
+        if (!(bev instanceof DictionaryBeValue dict)) {
+            throw new LibRuntimeException("'file tree' is invalid!");
+        }
+
+        var length = -1L;
+        ByteStringBeValue root = null;
+        var iterator = dict.iterator();
+        while (iterator.hasNext()) {
+            var entry = iterator.next();
+            var key = entry.getKey();
+            var value = entry.getValue();
+            if (Key.LENGTH.equals(key)) {
+                length = LENGTH.validate(value);
+            } else if (Key.PIECES_ROOT.equals(key)) {
+                if (!(value instanceof ByteStringBeValue bytes) || bytes.length() != PieceLayers.HASH_SIZE) {
+                    throw new LibRuntimeException("'pieces root' is not 32 bytes!");
+                }
+                root = bytes;
+            } else {
+                iterator.remove();
+            }
+        }
+
+        if (length < 0L) {
+            throw new LibRuntimeException("'length' is invalid");
+        }
+        if (root == null) {
+            throw new LibRuntimeException("'pieces root' is missing!");
+        }
+        return new PieceLayers.FileRoot(length, root);
     }
 
     // endregion
 
     // region 校验规则
 
-    private static final Validator<Void> PIECE_LENGTH = bev -> {
+    static final Validator<Void> PIECE_LENGTH = bev -> {
         // piece length must be number
         if (!(bev instanceof NumberBeValue value)) {
             throw new LibRuntimeException("'piece length' is not Number!");
@@ -180,34 +449,33 @@ public final class LibParser {
         return null;
     };
 
-    private static final Validator<Void> PIECES = bev -> {
+    static final Validator<Void> PIECES = bev -> {
         if (!(bev instanceof ByteStringBeValue value)) {
             throw new LibRuntimeException("'pieces' is not Byte Strings!");
         }
         // pieces length is always divided 20
-        if (value.getValue().length % 20 != 0) {
+        if (value.length() % 20 != 0) {
             throw new LibRuntimeException("'pieces' is not 20 * N!");
         }
 
         return null;
     };
 
-    private static final Validator<String> NAME = bev -> {
+    static final Validator<String> NAME = bev -> {
         if (!(bev instanceof ByteStringBeValue value)) {
             throw new LibRuntimeException("'name' or 'path' is not Byte Strings!");
         }
 
-        var bytes = value.getValue();
-        if (null == bytes || bytes.length == 0) {
+        if (value.length() == 0) {
             throw new LibRuntimeException("'name' or 'path' is empty!");
         }
 
         // 黑名单管理以插件的形式做吧
         // 比如不能包含 . 开头，内部不允许有种子文件， 长度不能超过260 （windows 的限制）
-        return new String(bytes, StandardCharsets.UTF_8);
+        return value.toString();
     };
 
-    private static final Validator<Long> LENGTH = bev -> {
+    static final Validator<Long> LENGTH = bev -> {
         if (!(bev instanceof NumberBeValue value)) {
             throw new LibRuntimeException("'length' is not Number!");
         }
@@ -223,7 +491,7 @@ public final class LibParser {
         return length;
     };
 
-    private static final Validator<List<String>> PATH = bev -> {
+    static final Validator<List<String>> PATH = bev -> {
         if (!(bev instanceof ListBeValue value)) {
             throw new LibRuntimeException("'path' is not List!");
         }
@@ -243,7 +511,9 @@ public final class LibParser {
         return paths;
     };
 
-    private static final Validator<T3tFiles> FILES = bev -> {
+    private static final Validator<T3tFiles> FILES = bev -> files(bev, false);
+
+    private static T3tFiles files(AbstractBeValue bev, boolean hybrid) {
         if (!(bev instanceof ListBeValue value)) {
             throw new LibRuntimeException("'files' is not List!");
         }
@@ -253,61 +523,151 @@ public final class LibParser {
         while (iterator.hasNext()) {
             // 列表中的 File 元素
             var next = iterator.next();
-            var file = file(next);
+            var file = file(next, hybrid);
             // 设置文件树的高度
-            files.add(file);
+            if (file != null) {
+                files.add(file);
+            }
         }
         if (files.isEmpty()) {
             throw new LibRuntimeException("'files' is empty!");
         }
 
         return files;
-    };
+    }
+
+    /**
+     * info 中保留的字段
+     */
+    enum InfoField {
+        PIECE_LENGTH, PIECES, NAME, LENGTH, FILES, META_VERSION, FILE_TREE
+    }
+
+    static final Map<ByteStringBeValue, InfoField> INFO_FIELDS = Map.of(
+            Key.PIECE_LENGTH, InfoField.PIECE_LENGTH,
+            Key.PIECES, InfoField.PIECES,
+            Key.NAME, InfoField.NAME,
+            Key.LENGTH, InfoField.LENGTH,
+            Key.FILES, InfoField.FILES,
+            Key.META_VERSION, InfoField.META_VERSION,
+            Key.FILE_TREE, InfoField.FILE_TREE
+    );
 
-    private static final Validator<T3tFiles> INFO = bev -> {
+    /**
+     * 校验后的 info
+     *
+     * @param version 1 或者 2 (包括 hybrid)
+     * @param roots   v2 file tree 中每个文件的 pieces root
+     */
+    private static record InfoLayout(int version, boolean hybrid, long pieceLength, T3tFiles files,
+                                     List<PieceLayers.FileRoot> roots) {}
+
+    /**
+     * v2 要求 piece length 至少 16 KiB
+     */
+    private static final long MIN_PIECE_LENGTH_V2 = PieceLayers.BLOCK_SIZE;
+
+    private static final Validator<InfoLayout> INFO = bev -> {
         if (!(bev instanceof DictionaryBeValue dict)) {
             throw new LibRuntimeException("'info' is not Dictionary!");
         }
 
+        // 先确定版本, file tree 排在 meta version 之前
+        var version = 1;
+        var meta = dict.get(Key.META_VERSION);
+        if (meta != null) {
+            if (!(meta instanceof NumberBeValue number) || number.getValue() != 2L) {
+                throw new LibRuntimeException("'meta version' is not supported!");
+            }
+            version = 2;
+        }
+
         var length = -1L;
+        var pieceLength = 0L;
         var flag = 0;
         var directory = false;
+        var pieces = false;
         var name = "";
 
         // 解析文件结构
         T3tFiles files = null;
+        T3tFiles tree = null;
+        var roots = new ArrayList<PieceLayers.FileRoot>();
         var iterator = dict.iterator();
         while (iterator.hasNext()) {
             var item = iterator.next();
             // 判断是否是必须的
-            var key = item.getKey();
+            var field = INFO_FIELDS.get(item.getKey());
+            if (field == null || (version == 1 && field == InfoField.FILE_TREE)) {
+                iterator.remove();
+                continue;
+            }
+
             var value = item.getValue();
-            // 统计出现的所有 key
-            if (Objects.equals(Key.PIECE_LENGTH, key)) {
-                PIECE_LENGTH.validate(value);
-            } else if (Objects.equals(Key.PIECES, key)) {
-                PIECES.validate(value);
-            } else if (Objects.equals(Key.NAME, key)) {
-                name = NAME.validate(value);
-            } else {
-                if (Objects.equals(Key.LENGTH, key)) {
+            switch (field) {
+                case PIECE_LENGTH -> {
+                    PIECE_LENGTH.validate(value);
+                    pieceLength = ((NumberBeValue) value).getValue();
+                }
+                case PIECES -> {
+                    PIECES.validate(value);
+                    pieces = true;
+                }
+                case NAME -> name = NAME.validate(value);
+                case LENGTH -> {
                     length = LENGTH.validate(value);
                     flag++;
-                } else if (Objects.equals(Key.FILES, key)) {
-                    files = FILES.validate(value);
+                }
+                case FILES -> {
+                    files = version == 1 ? FILES.validate(value) : files(value, true);
                     directory = true;
                     flag++;
-                } else {
-                    iterator.remove();
                 }
+                case META_VERSION -> {
+                    // 已经校验过了
+                }
+                case FILE_TREE -> {
+                    tree = new T3tFiles();
+                    tree(value, List.of(), tree, roots);
+                }
+                default -> throw new IllegalStateException();
             }
         }
 
         // 判断是否都包含了必须的字段
         var existed = dict.keys().size();
-        if (existed != 4 || flag != 1) {
+        if (version == 1) {
+            if (existed != 4 || flag != 1) {
+                throw new LibRuntimeException("'info' is not satisfactory!");
+            }
+            return new InfoLayout(1, false, pieceLength, files(files, length, name, directory), List.of());
+        }
+
+        // v2 只有 piece length 、 name 、 meta version 、 file tree, hybrid 还有 v1 的 pieces 和 length / files
+        if (tree == null || existed != (pieces ? 6 : 4) || flag != (pieces ? 1 : 0)) {
             throw new LibRuntimeException("'info' is not satisfactory!");
         }
+        if (pieceLength < MIN_PIECE_LENGTH_V2) {
+            throw new LibRuntimeException("'piece length' is less than 16 KiB!");
+        }
+
+        var single = tree.getNum() == 1 && tree.getContainer().get(0).path().equals(List.of(name));
+        if (pieces) {
+            // hybrid 的 v1 文件 (去掉 padding) 必须和 file tree 一致
+            var v1 = files == null ? List.of(new T3tFile(length, List.of(name))) : files.getContainer();
+            if (!v1.equals(tree.getContainer()) || directory == single) {
+                throw new LibRuntimeException("'files' and 'file tree' mismatch!");
+            }
+        }
+        return new InfoLayout(2, pieces, pieceLength, files(tree, 0L, name, !single), roots);
+    };
+
+    /**
+     * info 校验通过后, 补全文件结构
+     *
+     * @param files 多文件时的文件列表, 单文件时为 null
+     */
+    static T3tFiles files(T3tFiles files, long length, String name, boolean directory) {
         if (Objects.isNull(files)) {
             files = new T3tFiles(new T3tFile(length, List.of(name)));
         }
@@ -317,9 +677,11 @@ public final class LibParser {
         // 构造树形结构
         var root = T3tTree.tree(files);
         files.setRoot(root);
+        // 构建完成, 释放索引
+        files.compact();
 
         return files;
-    };
+    }
 
     // endregion
 
@@ -0,0 +1,20 @@
+package link.tothetracker.lib.torrent.spec;
+
+import link.tothetracker.lib.LibRuntimeException;
+import link.tothetracker.lib.torrent.T3tInfo;
+
+/**
+ * 批量解析中一个种子的结果, 成功时 info 不为 null, 失败时 error 不为 null
+ *
+ * @param index 在输入中的下标
+ * @param input 输入
+ *
+ * @author t3link
+ */
+public final record ParseResult<T>(int index, T input, T3tInfo info, LibRuntimeException error) {
+
+    public boolean ok() {
+        return this.error == null;
+    }
+
+}
@@ -0,0 +1,195 @@
+package link.tothetracker.lib.torrent.spec;
+
+import link.tothetracker.lib.LibRuntimeException;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * 种子里的文件首尾相接以后的内容, 按 piece 计算 SHA-1, TorrentCreator 和 TorrentRecheck 共用
+ *
+ * 不做内存映射 (10 万个文件以上会超过 vm.max_map_count), 读取 piece 涉及的文件时才打开,
+ * 用绝对位置的 read 读进线程自己的 direct buffer, 读完就关闭;
+ * 同时打开的文件数不超过并行计算的线程数, 多个线程可以同时读取同一个文件的不同位置
+ *
+ * @author t3link
+ */
+final class PieceContent {
+
+    private static final ThreadLocal<MessageDigest> SHA1 = ThreadLocal.withInitial(DigestUtils::getSha1Digest);
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    private static final ByteBuffer ZEROS = ByteBuffer.allocateDirect(16 * 1024).asReadOnlyBuffer();
+
+    /**
+     * @param offset    在首尾相接以后的起始位置
+     * @param path      磁盘上的文件, padding 文件和 missing 的文件为 null
+     * @param available 磁盘上实际存在的长度, 文件缺失或者不完整时小于 length
+     * @param padding   padding 文件, 内容全是 0, 不在磁盘上
+     */
+    private static record Entry(long offset, long length, Path path, long available, boolean padding) {}
+
+    /**
+     * 一个 piece 的计算结果
+     */
+    @FunctionalInterface
+    interface PieceHandler {
+
+        /**
+         * 在计算线程上调用, 每个 piece 一次
+         *
+         * @param hash 涉及的内容有缺失时为 null
+         */
+        void accept(int index, byte[] hash);
+
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    private long total;
+
+    /**
+     * 追加一个磁盘上的文件, 不存在或者比 length 短时只读取实际存在的部分
+     */
+    void add(Path path, long length) throws IOException {
+        var available = 0L;
+        if (Files.isRegularFile(path)) {
+            available = Math.min(Files.size(path), length);
+        }
+        this.entries.add(new Entry(this.total, length, path, available, false));
+        this.total += length;
+    }
+
+    /**
+     * 追加一个 padding 文件
+     */
+    void pad(long length) {
+        this.entries.add(new Entry(this.total, length, null, length, true));
+        this.total += length;
+    }
+
+    /**
+     * 追加一个无法读取的文件, 涉及它的区间都读取失败
+     */
+    void missing(long length) {
+        this.entries.add(new Entry(this.total, length, null, 0L, false));
+        this.total += length;
+    }
+
+    long total() {
+        return this.total;
+    }
+
+    /**
+     * piece 的数量
+     */
+    int pieces(long pieceLength) {
+        var count = (this.total + pieceLength - 1) / pieceLength;
+        if (count * 20 > Integer.MAX_VALUE) {
+            throw new LibRuntimeException("'piece length' is too small!");
+        }
+        return (int) count;
+    }
+
+    /**
+     * 在 fork-join 线程池上并行计算所有 piece 的 SHA-1
+     */
+    void hash(long pieceLength, PieceHandler handler) {
+        IntStream.range(0, this.pieces(pieceLength)).parallel().forEach(index -> {
+            var digest = SHA1.get();
+            digest.reset();
+            var start = index * pieceLength;
+            if (this.update(digest, start, Math.min(start + pieceLength, this.total))) {
+                handler.accept(index, digest.digest());
+            } else {
+                handler.accept(index, null);
+            }
+        });
+    }
+
+    /**
+     * 把 [start, end) 的内容喂给摘要, 可能跨越多个文件
+     *
+     * @return 区间内有缺失的内容时返回 false
+     */
+    private boolean update(MessageDigest digest, long start, long end) {
+        var position = start;
+        for (var i = this.find(start); i < this.entries.size() && position < end; i++) {
+            var entry = this.entries.get(i);
+            var from = position - entry.offset;
+            var to = Math.min(end - entry.offset, entry.length);
+            if (to > entry.available) {
+                return false;
+            }
+
+            if (entry.padding) {
+                while (from < to) {
+                    var length = (int) Math.min(to - from, ZEROS.capacity());
+                    digest.update(ZEROS.duplicate().limit(length));
+                    from += length;
+                }
+            } else if (from < to && !read(entry.path, digest, from, to)) {
+                return false;
+            }
+            position = entry.offset + to;
+        }
+        return true;
+    }
+
+    /**
+     * 把文件的 [from, to) 读进摘要
+     *
+     * @return 文件已经被删除或者变短时返回 false
+     */
+    private static boolean read(Path path, MessageDigest digest, long from, long to) {
+        var buffer = BUFFER.get();
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (from < to) {
+                buffer.clear().limit((int) Math.min(to - from, buffer.capacity()));
+                var read = channel.read(buffer, from);
+                if (read < 0) {
+                    return false;
+                }
+                digest.update(buffer.flip());
+                from += read;
+            }
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            throw new LibRuntimeException("读取异常", e);
+        }
+    }
+
+    /**
+     * 二分查找包含 position 的文件
+     */
+    private int find(long position) {
+        var low = 0;
+        var high = this.entries.size() - 1;
+        while (low < high) {
+            var middle = (low + high + 1) >>> 1;
+            if (this.entries.get(middle).offset <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+}
@@ -0,0 +1,222 @@
+package link.tothetracker.lib.torrent.spec;
+
+import link.tothetracker.lib.LibRuntimeException;
+import link.tothetracker.lib.encode.type.AbstractBeValue;
+import link.tothetracker.lib.encode.type.ByteStringBeValue;
+import link.tothetracker.lib.encode.type.DictionaryBeValue;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * BEP 52 的 piece layers 校验
+ *
+ * 每个大于 piece length 的文件, piece layers 里都有一层 merkle 树的节点, 从这一层往上计算出的根必须等于 pieces root
+ * 大种子的校验量很大, 按文件和子树拆分到 fork-join 线程池上并行计算
+ *
+ * @author t3link
+ */
+final class PieceLayers {
+
+    /**
+     * merkle 树叶子节点对应的块大小
+     */
+    static final int BLOCK_SIZE = 16 * 1024;
+
+    static final int HASH_SIZE = 32;
+
+    /**
+     * 不超过这个宽度的子树在当前线程里直接计算
+     */
+    private static final int THRESHOLD = 1024;
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(DigestUtils::getSha256Digest);
+
+    private PieceLayers() {}
+
+    /**
+     * file tree 中的一个文件
+     *
+     * @param root pieces root
+     */
+    static record FileRoot(long length, ByteStringBeValue root) {}
+
+    /**
+     * 校验 piece layers, 只保留文件用到的层
+     *
+     * @param bev         顶层的 piece layers
+     * @param pieceLength piece length
+     * @param files       file tree 中的文件
+     * @return 保留下来的 piece layers, 没有文件大于 piece length 时为 null
+     */
+    static DictionaryBeValue verify(AbstractBeValue bev, long pieceLength, List<FileRoot> files) {
+        // 相同内容的文件共用一层
+        var needed = new LinkedHashMap<ByteStringBeValue, Long>();
+        for (var file : files) {
+            if (file.length() > pieceLength) {
+                needed.put(file.root(), file.length());
+            }
+        }
+        if (needed.isEmpty()) {
+            return null;
+        }
+
+        if (bev == null) {
+            throw new LibRuntimeException("'piece layers' is missing!");
+        }
+        if (!(bev instanceof DictionaryBeValue dict)) {
+            throw new LibRuntimeException("'piece layers' is not Dictionary!");
+        }
+
+        var pads = pads(pieceLength);
+        var layers = new DictionaryBeValue();
+        var tasks = new ArrayList<RootTask>(needed.size());
+        for (var entry : needed.entrySet()) {
+            if (!(dict.get(entry.getKey()) instanceof ByteStringBeValue layer)) {
+                throw new LibRuntimeException("'piece layers' is invalid!");
+            }
+            var pieces = (entry.getValue() + pieceLength - 1) / pieceLength;
+            if (layer.length() != pieces * HASH_SIZE) {
+                throw new LibRuntimeException("'piece layers' is invalid!");
+            }
+
+            layers.put(entry.getKey(), layer);
+            tasks.add(RootTask.of(layer.buffer(), pads));
+        }
+
+        // 所有文件的根一起交给线程池
+        var results = ForkJoinPool.commonPool().invoke(new RecursiveTask<List<byte[]>>() {
+            @Override
+            protected List<byte[]> compute() {
+                ForkJoinTask.invokeAll(tasks);
+                var roots = new ArrayList<byte[]>(tasks.size());
+                for (var task : tasks) {
+                    roots.add(task.join());
+                }
+                return roots;
+            }
+        });
+
+        var index = 0;
+        for (var root : needed.keySet()) {
+            if (!root.contentEquals(ByteBuffer.wrap(results.get(index++)))) {
+                throw new LibRuntimeException("'piece layers' does not match 'pieces root'!");
+            }
+        }
+        return layers;
+    }
+
+    /**
+     * 文件之外的部分按全 0 的叶子节点补齐, pads[k] 是 piece 那一层 2^k 个补齐节点的子树根
+     */
+    static byte[][] pads(long pieceLength) {
+        var digest = SHA256.get();
+        var pad = new byte[HASH_SIZE];
+        for (var blocks = pieceLength / BLOCK_SIZE; blocks > 1; blocks /= 2) {
+            pad = hash(digest, pad, pad);
+        }
+
+        var pads = new byte[Long.SIZE][];
+        pads[0] = pad;
+        for (var i = 1; i < pads.length; i++) {
+            pads[i] = hash(digest, pads[i - 1], pads[i - 1]);
+        }
+        return pads;
+    }
+
+    /**
+     * 从 piece 那一层计算 merkle 树的根
+     *
+     * @param layer piece layers 中的一层
+     */
+    static byte[] root(ByteBuffer layer, long pieceLength) {
+        return RootTask.of(layer, pads(pieceLength)).invoke();
+    }
+
+    private static byte[] hash(MessageDigest digest, byte[] left, byte[] right) {
+        digest.update(left);
+        digest.update(right);
+        return digest.digest();
+    }
+
+    /**
+     * 计算 [from, from + width) 这棵子树的根, width 是 2 的幂
+     */
+    private static final class RootTask extends RecursiveTask<byte[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ByteBuffer layer;
+
+        private final int count;
+
+        private final int from;
+
+        private final int width;
+
+        private final byte[][] pads;
+
+        private RootTask(ByteBuffer layer, int count, int from, int width, byte[][] pads) {
+            this.layer = layer;
+            this.count = count;
+            this.from = from;
+            this.width = width;
+            this.pads = pads;
+        }
+
+        static RootTask of(ByteBuffer layer, byte[][] pads) {
+            var count = layer.remaining() / HASH_SIZE;
+            var width = count <= 1 ? 1 : Integer.highestOneBit(count - 1) << 1;
+            return new RootTask(layer.slice(), count, 0, width, pads);
+        }
+
+        @Override
+        protected byte[] compute() {
+            // 整棵子树都在文件之外
+            if (this.from >= this.count) {
+                return this.pads[Integer.numberOfTrailingZeros(this.width)];
+            }
+            if (this.width <= THRESHOLD) {
+                return this.sequential();
+            }
+
+            var half = this.width / 2;
+            var left = new RootTask(this.layer, this.count, this.from, half, this.pads);
+            var right = new RootTask(this.layer, this.count, this.from + half, half, this.pads);
+            right.fork();
+            var l = left.compute();
+            var r = right.join();
+            return hash(SHA256.get(), l, r);
+        }
+
+        private byte[] sequential() {
+            var nodes = new byte[this.width][];
+            for (var i = 0; i < this.width; i++) {
+                var index = this.from + i;
+                if (index < this.count) {
+                    nodes[i] = new byte[HASH_SIZE];
+                    this.layer.get(index * HASH_SIZE, nodes[i]);
+                } else {
+                    nodes[i] = this.pads[0];
+                }
+            }
+
+            var digest = SHA256.get();
+            for (var w = this.width; w > 1; w /= 2) {
+                for (var i = 0; i < w / 2; i++) {
+                    nodes[i] = hash(digest, nodes[2 * i], nodes[2 * i + 1]);
+                }
+            }
+            return nodes[0];
+        }
+
+    }
+
+}
@@ -0,0 +1,34 @@
+package link.tothetracker.lib.torrent.spec;
+
+import link.tothetracker.lib.torrent.file.T3tFile;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * 数据校验的结果
+ *
+ * @param pieces   piece 总数
+ * @param verified 校验通过的 piece
+ * @param files    每个文件的完成情况, 顺序和种子里一致 (不包括 padding 文件)
+ *
+ * @author t3link
+ */
+public final record RecheckResult(int pieces, BitSet verified, List<FileState> files) {
+
+    /**
+     * @param verified 落在校验通过的 piece 里的字节数
+     */
+    public static record FileState(T3tFile file, long verified) {
+
+        public boolean complete() {
+            return this.verified == this.file.length();
+        }
+
+    }
+
+    public boolean complete() {
+        return this.verified.cardinality() == this.pieces;
+    }
+
+}
@@ -0,0 +1,187 @@
+package link.tothetracker.lib.torrent.spec;
+
+import link.tothetracker.lib.LibRuntimeException;
+import link.tothetracker.lib.encode.type.AbstractBeValue;
+import link.tothetracker.lib.encode.type.ByteStringBeValue;
+import link.tothetracker.lib.encode.type.DictionaryBeValue;
+import link.tothetracker.lib.encode.type.ListBeValue;
+import link.tothetracker.lib.encode.type.NumberBeValue;
+import link.tothetracker.lib.torrent.T3tInfo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 从文件或者目录制作种子
+ *
+ * 文件按路径排序后首尾相接, 按 piece length 切分, piece 可以跨越文件边界;
+ * 各个 piece 的 SHA-1 由 PieceContent 在 fork-join 线程池上并行计算
+ *
+ * 空文件和 LibParser 一样不被接受, 制作时直接跳过
+ *
+ * @author t3link
+ */
+public final class TorrentCreator {
+
+    /**
+     * 自动选择 piece length 时的目标 piece 数
+     */
+    private static final long TARGET_PIECES = 1500;
+
+    private static final long MIN_PIECE_LENGTH = 16 * 1024;
+
+    private static final long MAX_PIECE_LENGTH = 16 * 1024 * 1024;
+
+    private final Path root;
+
+    /**
+     * 0 表示按总大小自动选择
+     */
+    private long pieceLength;
+
+    private String announce;
+
+    /**
+     * @param root 文件或者目录, 它的名称就是种子的 name, 不能是文件系统的根
+     */
+    public TorrentCreator(Path root) {
+        if (root.getFileName() == null) {
+            throw new LibRuntimeException("invalid source path!");
+        }
+        this.root = root;
+    }
+
+    /**
+     * 指定 piece length, 必须是 2 的幂
+     */
+    public void setPieceLength(long pieceLength) {
+        LibParser.PIECE_LENGTH.validate(new NumberBeValue(pieceLength));
+        this.pieceLength = pieceLength;
+    }
+
+    public void setAnnounce(String announce) {
+        this.announce = announce;
+    }
+
+    /**
+     * 制作种子文件
+     */
+    public byte[] create() {
+        try {
+            var files = this.files();
+            var content = new PieceContent();
+            for (var file : files) {
+                content.add(file.file, file.length);
+            }
+            var total = content.total();
+
+            var pieceLength = this.pieceLength > 0 ? this.pieceLength : pieceLength(total);
+            var info = new DictionaryBeValue();
+            info.put(Key.NAME, new ByteStringBeValue(this.root.getFileName().toString()));
+            info.put(Key.PIECE_LENGTH, new NumberBeValue(pieceLength));
+            info.put(Key.PIECES, new ByteStringBeValue(pieces(content, pieceLength)));
+            if (Files.isDirectory(this.root)) {
+                var list = new ArrayList<AbstractBeValue>(files.size());
+                for (var file : files) {
+                    var path = new ArrayList<AbstractBeValue>();
+                    for (var name : file.path) {
+                        path.add(new ByteStringBeValue(name));
+                    }
+                    var dict = new DictionaryBeValue();
+                    dict.put(Key.LENGTH, new NumberBeValue(file.length));
+                    dict.put(Key.PATH, new ListBeValue(path));
+                    list.add(dict);
+                }
+                info.put(Key.FILES, new ListBeValue(list));
+            } else {
+                info.put(Key.LENGTH, new NumberBeValue(total));
+            }
+
+            var torrent = new DictionaryBeValue();
+            if (this.announce != null) {
+                torrent.put(Key.ANNOUNCE, new ByteStringBeValue(this.announce));
+            }
+            torrent.put(Key.INFO, info);
+            return torrent.write();
+        } catch (IOException e) {
+            throw new LibRuntimeException("制作种子异常", e);
+        }
+    }
+
+    /**
+     * 制作种子, 返回和 LibParser.read 解析这个种子完全一致的结果
+     */
+    public T3tInfo create(String source) {
+        return LibParser.read(this.create(), source);
+    }
+
+    /**
+     * piece 数量在 TARGET_PIECES 附近的 2 的幂
+     */
+    static long pieceLength(long total) {
+        var pieceLength = Long.highestOneBit(Math.max(total / TARGET_PIECES, 1));
+        return Math.max(MIN_PIECE_LENGTH, Math.min(MAX_PIECE_LENGTH, pieceLength));
+    }
+
+    /**
+     * 参与制作的文件
+     *
+     * @param path 相对于根目录的路径, 单文件时只有文件名
+     */
+    private static record Source(Path file, List<String> path, long length) {}
+
+    private List<Source> files() throws IOException {
+        List<Path> paths;
+        if (Files.isDirectory(this.root)) {
+            try (Stream<Path> walk = Files.walk(this.root)) {
+                paths = walk.filter(Files::isRegularFile)
+                        .sorted(Comparator.comparing(path -> this.root.relativize(path).toString().replace('\\', '/')))
+                        .collect(Collectors.toList());
+            }
+        } else {
+            paths = List.of(this.root);
+        }
+
+        var files = new ArrayList<Source>(paths.size());
+        for (var path : paths) {
+            var length = Files.size(path);
+            if (length == 0) {
+                continue;
+            }
+
+            var names = new ArrayList<String>();
+            var relative = Files.isDirectory(this.root) ? this.root.relativize(path) : path.getFileName();
+            for (var name : relative) {
+                names.add(name.toString());
+            }
+            files.add(new Source(path, names, length));
+        }
+
+        if (files.isEmpty()) {
+            throw new LibRuntimeException("no file to create torrent!");
+        }
+        return files;
+    }
+
+    /**
+     * 并行计算所有 piece 的 SHA-1
+     */
+    private static byte[] pieces(PieceContent content, long pieceLength) {
+        var pieces = new byte[content.pieces(pieceLength) * 20];
+        content.hash(pieceLength, (index, hash) -> {
+            if (hash == null) {
+                // 制作过程中文件被删除或者变短
+                throw new LibRuntimeException("file changed while creating torrent!");
+            }
+            System.arraycopy(hash, 0, pieces, index * 20, 20);
+        });
+        return pieces;
+    }
+
+}
@@ -0,0 +1,139 @@
+package link.tothetracker.lib.torrent.spec;
+
+import link.tothetracker.lib.LibRuntimeException;
+import link.tothetracker.lib.encode.BeDecoder;
+import link.tothetracker.lib.encode.type.ByteStringBeValue;
+import link.tothetracker.lib.encode.type.DictionaryBeValue;
+import link.tothetracker.lib.encode.type.ListBeValue;
+import link.tothetracker.lib.encode.type.NumberBeValue;
+import link.tothetracker.lib.torrent.T3tInfo;
+import link.tothetracker.lib.torrent.file.T3tFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * 按种子的 pieces 校验磁盘上的数据
+ *
+ * 数据的位置和客户端的保存目录一致: 单文件是 directory/name, 多文件是 directory/name/path...
+ * 各个 piece 的 SHA-1 由 PieceContent 在 fork-join 线程池上并行计算;
+ * 缺失或者不完整的文件不会报错, 涉及到的 piece 记为校验失败
+ *
+ * 只校验 v1 的 pieces, hybrid 种子的 padding 文件按全 0 计算; 纯 v2 种子没有 pieces, 不支持
+ *
+ * @author t3link
+ */
+public final class TorrentRecheck {
+
+    private TorrentRecheck() {}
+
+    /**
+     * 一个文件在首尾相接以后的位置
+     *
+     * @param file padding 文件时为 null
+     */
+    private static record Span(T3tFile file, long offset, long length) {}
+
+    /**
+     * @param info      LibParser 解析出的种子
+     * @param directory 保存目录
+     */
+    public static RecheckResult check(T3tInfo info, Path directory) {
+        DictionaryBeValue dict;
+        try {
+            dict = (DictionaryBeValue) BeDecoder.decode(info.bytes());
+        } catch (IOException e) {
+            throw new LibRuntimeException("解析异常", e);
+        }
+
+        var pieces = dict.get(Key.PIECES);
+        if (pieces == null) {
+            throw new LibRuntimeException("only v1 'pieces' supported!");
+        }
+        var hashes = ((ByteStringBeValue) pieces).buffer();
+        var pieceLength = ((NumberBeValue) dict.get(Key.PIECE_LENGTH)).getValue();
+        var name = LibParser.NAME.validate(dict.get(Key.NAME));
+
+        var spans = new ArrayList<Span>();
+        var content = new PieceContent();
+        try {
+            if (dict.get(Key.FILES) instanceof ListBeValue files) {
+                var iterator = files.iterator();
+                while (iterator.hasNext()) {
+                    var file = (DictionaryBeValue) iterator.next();
+                    var length = LibParser.LENGTH.validate(file.get(Key.LENGTH));
+                    if (file.get(Key.ATTR) instanceof ByteStringBeValue attr && attr.toString().indexOf('p') >= 0) {
+                        spans.add(new Span(null, content.total(), length));
+                        content.pad(length);
+                        continue;
+                    }
+
+                    var path = LibParser.PATH.validate(file.get(Key.PATH));
+                    spans.add(new Span(new T3tFile(length, path), content.total(), length));
+                    add(content, directory, name, path, length);
+                }
+            } else {
+                var length = LibParser.LENGTH.validate(dict.get(Key.LENGTH));
+                spans.add(new Span(new T3tFile(length, List.of(name)), 0L, length));
+                add(content, directory, null, List.of(name), length);
+            }
+        } catch (IOException e) {
+            throw new LibRuntimeException("读取异常", e);
+        }
+
+        var count = content.pieces(pieceLength);
+        if (hashes.remaining() != count * 20) {
+            throw new LibRuntimeException("'pieces' does not match files!");
+        }
+
+        // 各个线程只写自己的下标, 并行计算结束以后再汇总
+        var passed = new boolean[count];
+        content.hash(pieceLength, (index, hash) ->
+                passed[index] = hash != null && hashes.slice(index * 20, 20).equals(ByteBuffer.wrap(hash)));
+
+        var verified = new BitSet(count);
+        for (var i = 0; i < count; i++) {
+            if (passed[i]) {
+                verified.set(i);
+            }
+        }
+
+        var states = new ArrayList<RecheckResult.FileState>(spans.size());
+        for (var span : spans) {
+            if (span.file == null) {
+                continue;
+            }
+            var end = span.offset + span.length;
+            var bytes = 0L;
+            for (var i = (int) (span.offset / pieceLength); i < count && i * pieceLength < end; i++) {
+                if (verified.get(i)) {
+                    bytes += Math.min(end, (i + 1) * pieceLength) - Math.max(span.offset, i * pieceLength);
+                }
+            }
+            states.add(new RecheckResult.FileState(span.file, bytes));
+        }
+        return new RecheckResult(count, verified, states);
+    }
+
+    /**
+     * 追加一个磁盘上的文件, 路径逃出保存目录的按缺失处理
+     */
+    private static void add(PieceContent content, Path directory, String name, List<String> path, long length)
+            throws IOException {
+        var file = name == null ? directory : directory.resolve(name);
+        for (var part : path) {
+            file = file.resolve(part);
+        }
+        var root = directory.normalize();
+        if (file.normalize().startsWith(root) && !file.normalize().equals(root)) {
+            content.add(file, length);
+        } else {
+            content.missing(length);
+        }
+    }
+
+}
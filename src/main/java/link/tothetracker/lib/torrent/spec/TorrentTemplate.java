@@ -0,0 +1,189 @@
+package link.tothetracker.lib.torrent.spec;
+
+import link.tothetracker.lib.encode.BeEncoder;
+import link.tothetracker.lib.encode.type.ByteStringBeValue;
+import link.tothetracker.lib.torrent.T3tInfo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.SelectableChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * 预编译的种子下载模板
+ *
+ * 重新生成的种子里只有 announce 和 site info 因用户而异, 其余部分 (包括 info) 编译成固定的片段,
+ * 每次下载只编码这两个值, 和固定片段拼成 ByteBuffer[], 可以直接做 gathering write
+ *
+ * <pre>
+ * d 8:announce [announce] 8:encoding 5:UTF-8 4:info [info] (12:piece layers [piece layers]) 9:site info [extra] e
+ * </pre>
+ *
+ * 模板不可变, 可以按 T3tInfo 缓存, 多线程共用; 写到 socket 的热门种子可以编译成 direct 模板,
+ * 写出时 JDK 不需要再把 info 拷贝到临时的 direct buffer
+ *
+ * @author t3link
+ */
+public final class TorrentTemplate {
+
+    private static final ByteStringBeValue UTF8 = new ByteStringBeValue(StandardCharsets.UTF_8.name());
+
+    /**
+     * 固定片段, 下标 ANNOUNCE 和 parts.length - 2 两个位置是空出来的 announce 和 site info
+     */
+    private final ByteBuffer[] parts;
+
+    private final int fixedLength;
+
+    private static final int ANNOUNCE = 1;
+
+    private TorrentTemplate(ByteBuffer[] parts) {
+        this.parts = parts;
+        var length = 0;
+        for (var part : parts) {
+            if (part != null) {
+                length += part.remaining();
+            }
+        }
+        this.fixedLength = length;
+    }
+
+    /**
+     * 编译模板, info 和 piece layers 直接包装 T3tInfo 里的数组, 不拷贝
+     */
+    public static TorrentTemplate compile(T3tInfo info) {
+        return compile(info, false);
+    }
+
+    /**
+     * 编译模板
+     *
+     * @param direct 是否把 info 和 piece layers 拷贝到 direct buffer (只拷贝这一次), 用于 channel 的零拷贝写出
+     */
+    public static TorrentTemplate compile(T3tInfo info, boolean direct) {
+        var head = fixed(encoder -> {
+            encoder.startDictionary();
+            Key.ANNOUNCE.write(encoder);
+        }, 1 + Key.ANNOUNCE.encodedLength());
+
+        var middle = fixed(encoder -> {
+            Key.ENCODING.write(encoder);
+            UTF8.write(encoder);
+            Key.INFO.write(encoder);
+        }, Key.ENCODING.encodedLength() + UTF8.encodedLength() + Key.INFO.encodedLength());
+
+        var siteInfo = fixed(encoder -> Key.SITE_INFO.write(encoder), Key.SITE_INFO.encodedLength());
+        var tail = fixed(BeEncoder::end, 1);
+        var bytes = shared(info.bytes(), direct);
+
+        // v2 / hybrid 的 piece layers 排在 info 和 site info 之间
+        if (info.pieceLayers() == null) {
+            return new TorrentTemplate(new ByteBuffer[]{head, null, middle, bytes, siteInfo, null, tail});
+        }
+        var layersKey = fixed(encoder -> Key.PIECE_LAYERS.write(encoder), Key.PIECE_LAYERS.encodedLength());
+        var layers = shared(info.pieceLayers(), direct);
+        return new TorrentTemplate(
+                new ByteBuffer[]{head, null, middle, bytes, layersKey, layers, siteInfo, null, tail});
+    }
+
+    /**
+     * 生成一个用户的种子, 只编码 announce 和 site info, 固定片段共用
+     *
+     * @return 依次写出就是完整的种子文件, 每个 buffer 都是独立的视图, 写出时可以随意修改 position
+     */
+    public ByteBuffer[] render(ExtraInfo extra) {
+        var announce = new ByteStringBeValue(extra.getAnnounce());
+        var announceLength = announce.encodedLength();
+        // site info 只构建一次, 计算长度和编码共用
+        var siteInfo = extra.dict();
+        var variable = ByteBuffer.allocate(announceLength + siteInfo.encodedLength());
+        var encoder = new BeEncoder(variable);
+        announce.write(encoder);
+        siteInfo.write(encoder);
+
+        var rendered = new ByteBuffer[this.parts.length];
+        for (var i = 0; i < this.parts.length; i++) {
+            var part = this.parts[i];
+            rendered[i] = part == null ? null : part.duplicate();
+        }
+        rendered[ANNOUNCE] = variable.slice(0, announceLength);
+        rendered[rendered.length - 2] = variable.slice(announceLength, variable.capacity() - announceLength);
+        return rendered;
+    }
+
+    /**
+     * 生成的种子文件的字节数, 可以用作 Content-Length
+     */
+    public int length(ExtraInfo extra) {
+        return this.fixedLength + new ByteStringBeValue(extra.getAnnounce()).encodedLength()
+                + extra.dict().encodedLength();
+    }
+
+    /**
+     * 生成完整的种子文件, 和 LibParser.write 的结果一致
+     */
+    public byte[] write(ExtraInfo extra) {
+        var rendered = this.render(extra);
+        var length = 0;
+        for (var buffer : rendered) {
+            length += buffer.remaining();
+        }
+        var output = ByteBuffer.allocate(length);
+        for (var buffer : rendered) {
+            output.put(buffer);
+        }
+        return output.array();
+    }
+
+    /**
+     * 写到 channel, 每次请求只分配 announce 和 site info
+     *
+     * 一直写到全部写完才返回, 所以只接受阻塞模式的 channel; 非阻塞的 socket 会在发送缓冲区满时返回 0,
+     * 这里就会空转, 这种情况应该用 render 的结果自己配合 selector 续写
+     *
+     * @return 写出的字节数
+     * @throws IllegalBlockingModeException channel 是非阻塞模式
+     */
+    public long write(ExtraInfo extra, GatheringByteChannel channel) throws IOException {
+        if (channel instanceof SelectableChannel selectable && !selectable.isBlocking()) {
+            throw new IllegalBlockingModeException();
+        }
+
+        var rendered = this.render(extra);
+        var remaining = 0L;
+        for (var buffer : rendered) {
+            remaining += buffer.remaining();
+        }
+
+        var total = remaining;
+        var offset = 0;
+        while (remaining > 0) {
+            remaining -= channel.write(rendered, offset, rendered.length - offset);
+            // 跳过已经写完的片段
+            while (offset < rendered.length && !rendered[offset].hasRemaining()) {
+                offset++;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 所有请求共用的只读片段
+     */
+    private static ByteBuffer shared(byte[] bytes, boolean direct) {
+        if (!direct) {
+            return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        }
+        return ByteBuffer.allocateDirect(bytes.length).put(bytes).flip().asReadOnlyBuffer();
+    }
+
+    private static ByteBuffer fixed(Consumer<BeEncoder> segment, int length) {
+        var buffer = ByteBuffer.allocate(length);
+        segment.accept(new BeEncoder(buffer));
+        return buffer.flip().asReadOnlyBuffer();
+    }
+
+}
@@ -0,0 +1,260 @@
+package link.tothetracker.lib.encode;
+
+import lombok.SneakyThrows;
+import link.tothetracker.lib.LibRuntimeException;
+import link.tothetracker.lib.encode.type.ByteStringBeValue;
+import link.tothetracker.lib.encode.type.DictionaryBeValue;
+import link.tothetracker.lib.encode.type.ListBeValue;
+import link.tothetracker.lib.encode.type.NumberBeValue;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author t3link
+ */
+class BeDecoderTest {
+
+    @SneakyThrows
+    private byte[] read(String fileName) {
+        try (var in = BeDecoderTest.class.getResourceAsStream("/source/" + fileName)) {
+            return in.readAllBytes();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "Single File.torrent",
+            "Multi File In Directory.torrent",
+            "Too Many File.torrent",
+            "complex qb utf8.torrent"
+    })
+    @SneakyThrows
+    void sameResult(String fileName) {
+        var data = read(fileName);
+
+        // 流解码作为基准
+        var expected = BeDecoder.decode(new BufferedInputStream(new ByteArrayInputStream(data))).write();
+
+        Assertions.assertArrayEquals(expected, BeDecoder.decode(data).write());
+        Assertions.assertArrayEquals(expected, BeDecoder.decode(ByteBuffer.wrap(data)).write());
+
+        var direct = ByteBuffer.allocateDirect(data.length).put(data).flip();
+        Assertions.assertArrayEquals(expected, BeDecoder.decode(direct).write());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"d2:dxi9223372036854775807ee", "d2:dxi-9223372036854775808ee"})
+    @SneakyThrows
+    void numberBounds(String text) {
+        // 不同的入口重新编码出相同的字节
+        var data = text.getBytes(StandardCharsets.UTF_8);
+        Assertions.assertArrayEquals(data, BeDecoder.decode(data).write());
+        Assertions.assertArrayEquals(data, BeDecoder.decode(new ByteArrayInputStream(data)).write());
+        var push = new BePushDecoder();
+        push.feed(ByteBuffer.wrap(data));
+        Assertions.assertArrayEquals(data, push.finish().write());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"d2:dxi23034647878639043469ee", "i9223372036854775808e", "i-9223372036854775809e"})
+    void numberOverflow(String text) {
+        var data = text.getBytes(StandardCharsets.UTF_8);
+        var e = Assertions.assertThrows(LibRuntimeException.class, () -> BeDecoder.decode(data));
+        Assertions.assertEquals("number overflow!", e.getMessage());
+        e = Assertions.assertThrows(LibRuntimeException.class,
+                () -> BeDecoder.decode(new ByteArrayInputStream(data)));
+        Assertions.assertEquals("number overflow!", e.getMessage());
+        e = Assertions.assertThrows(LibRuntimeException.class, () -> new BePushDecoder().feed(ByteBuffer.wrap(data)));
+        Assertions.assertEquals("number overflow!", e.getMessage());
+    }
+
+    @Test
+    @SneakyThrows
+    void view() {
+        var data = "l3:abc3:abd2:abe".getBytes(StandardCharsets.UTF_8);
+        var iterator = ((ListBeValue) BeDecoder.decode(data)).iterator();
+        var abc = (ByteStringBeValue) iterator.next();
+        var abd = (ByteStringBeValue) iterator.next();
+        var ab = (ByteStringBeValue) iterator.next();
+
+        // 视图和私有数组的值比较 、 哈希 、 排序一致
+        var copy = new ByteStringBeValue("abc");
+        Assertions.assertEquals(copy, abc);
+        Assertions.assertEquals(abc, copy);
+        Assertions.assertEquals(copy.hashCode(), abc.hashCode());
+        Assertions.assertEquals(0, abc.compareTo(copy));
+        Assertions.assertTrue(abc.compareTo(abd) < 0);
+        Assertions.assertTrue(ab.compareTo(abc) < 0);
+        Assertions.assertTrue(new ByteStringBeValue(new byte[]{(byte) 0xFF}).compareTo(abc) > 0);
+
+        // getValue() 之前和输入共享内容, 之后不再受输入影响
+        data[13] = 'x';
+        Assertions.assertEquals("xb", ab.toString());
+        Assertions.assertArrayEquals("xb".getBytes(StandardCharsets.UTF_8), ab.getValue());
+        data[13] = 'y';
+        Assertions.assertEquals("xb", ab.toString());
+        Assertions.assertArrayEquals("2:xb".getBytes(StandardCharsets.UTF_8), ab.write());
+    }
+
+    @Test
+    @SneakyThrows
+    void span() {
+        var data = "d1:ad1:bi1ee1:cl2:xyee".getBytes(StandardCharsets.UTF_8);
+        var value = (DictionaryBeValue) BeDecoder.decode(data);
+        Assertions.assertTrue(value.intact());
+        Assertions.assertArrayEquals(data, value.write());
+
+        // 修改子节点以后, 父节点不能再直接拷贝原始片段
+        var child = (DictionaryBeValue) value.get(new ByteStringBeValue("a"));
+        child.put(new ByteStringBeValue("c"), new NumberBeValue(2L));
+        Assertions.assertFalse(value.intact());
+        Assertions.assertEquals("d1:ad1:bi1e1:ci2ee1:cl2:xyee",
+                new String(value.write(), StandardCharsets.UTF_8));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"d1:bi1e1:ai2ee", "d1:ai1e1:ai2ee", "l02:abe"})
+    @SneakyThrows
+    void notCanonical(String data) {
+        // 非规范编码不记录原始片段, 输出重新编码的结果
+        var value = BeDecoder.decode(data.getBytes(StandardCharsets.UTF_8));
+        Assertions.assertFalse(value.intact());
+        Assertions.assertNotEquals(data, new String(value.write(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @SneakyThrows
+    @SuppressWarnings("deprecation")
+    void deprecated() {
+        Assertions.assertEquals(new ByteStringBeValue("ab"), decoder("2:ab").decodeBytes());
+        Assertions.assertEquals(-3L, ((NumberBeValue) decoder("i-3e").decodeNumber()).getValue());
+        Assertions.assertEquals("le", new String(decoder("le").decodeList().write(), StandardCharsets.UTF_8));
+        Assertions.assertEquals("d1:ai1ee",
+                new String(decoder("d1:ai1ee").decodeDictionary().write(), StandardCharsets.UTF_8));
+
+        var e = Assertions.assertThrows(LibRuntimeException.class, () -> decoder("le").decodeDictionary());
+        Assertions.assertEquals("'d' expected!", e.getMessage());
+    }
+
+    private static BeDecoder decoder(String text) {
+        return new BeDecoder(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @SneakyThrows
+    void depth() {
+        var depth = 100_000;
+        var data = "l".repeat(depth) + "e".repeat(depth);
+        var bytes = data.getBytes(StandardCharsets.UTF_8);
+
+        // 默认深度限制
+        var e = Assertions.assertThrows(LibRuntimeException.class, () -> BeDecoder.decode(bytes));
+        Assertions.assertEquals("nesting too deep!", e.getMessage());
+
+        // 放开限制以后也不会栈溢出
+        var decoder = new BeDecoder(bytes);
+        decoder.setMaxDepth(depth);
+        var value = decoder.decode();
+        var count = 0;
+        while (value instanceof ListBeValue list) {
+            count++;
+            var iterator = list.iterator();
+            value = iterator.hasNext() ? iterator.next() : null;
+        }
+        Assertions.assertEquals(depth, count);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"Single File.torrent", "Too Many File.torrent"})
+    @SneakyThrows
+    void lazy(String fileName) {
+        var data = read(fileName);
+        var eager = (DictionaryBeValue) BeDecoder.decode(data);
+
+        var decoder = new BeDecoder(data);
+        decoder.setLazy(true);
+        var lazy = (DictionaryBeValue) decoder.decode();
+
+        var info = new ByteStringBeValue("info");
+        Assertions.assertArrayEquals(eager.get(info).write(), lazy.get(info).write());
+        Assertions.assertTrue(lazy.get(info).intact());
+        Assertions.assertArrayEquals(eager.write(), lazy.write());
+    }
+
+    @Test
+    @SneakyThrows
+    void symbols() {
+        var info = new ByteStringBeValue("info");
+        var name = new ByteStringBeValue("name");
+        var decoder = new BeDecoder("d4:infoi1e4:namei2e5:otheri3ee".getBytes(StandardCharsets.UTF_8));
+        decoder.setSymbols(BeSymbolTable.of(info, name));
+        var dict = (DictionaryBeValue) decoder.decode();
+
+        var keys = dict.keys().iterator();
+        Assertions.assertSame(info, keys.next());
+        Assertions.assertSame(name, keys.next());
+        Assertions.assertEquals(new ByteStringBeValue("other"), keys.next());
+    }
+
+    @Test
+    void unsigned() {
+        // 按无符号字节排序, 0xff 排在 'a' 之后
+        var high = new ByteStringBeValue(new byte[]{(byte) 0xff});
+        var low = new ByteStringBeValue("a");
+        Assertions.assertTrue(high.compareTo(low) > 0);
+        Assertions.assertTrue(low.compareTo(new ByteStringBeValue("ab")) < 0);
+        Assertions.assertEquals(0, low.compareTo(new ByteStringBeValue("a")));
+    }
+
+    @Test
+    @SneakyThrows
+    void extract() {
+        var data = "d1:ad1:bi1e1:cl2:xy2:zwee1:dli1eli2ei3eeee".getBytes(StandardCharsets.UTF_8);
+        var extracted = BeDecoder.extract(data, "a/b", "a/c/1", "d/*", "a", "missing", "d/1/0");
+
+        Assertions.assertEquals("[1]", extracted.get("a/b").toString());
+        Assertions.assertEquals(List.of(new ByteStringBeValue("zw")), extracted.get("a/c/1"));
+        Assertions.assertEquals(2, extracted.get("d/*").size());
+        Assertions.assertEquals("d1:bi1e1:cl2:xy2:zwee",
+                new String(extracted.get("a").get(0).write(), StandardCharsets.UTF_8));
+        Assertions.assertTrue(extracted.get("missing").isEmpty());
+        Assertions.assertEquals("[2]", extracted.get("d/1/0").toString());
+
+        // 超出 int 的数字段只按 key 匹配
+        data = "d11:99999999999i7e1:lllei5eee".getBytes(StandardCharsets.UTF_8);
+        extracted = BeDecoder.extract(data, "99999999999", "l/99999999999", "l/0", "l/1");
+        Assertions.assertEquals("[7]", extracted.get("99999999999").toString());
+        Assertions.assertTrue(extracted.get("l/99999999999").isEmpty());
+        Assertions.assertEquals("le", new String(extracted.get("l/0").get(0).write(), StandardCharsets.UTF_8));
+        Assertions.assertEquals("[5]", extracted.get("l/1").toString());
+    }
+
+    @Test
+    @SneakyThrows
+    void extractTorrent() {
+        var data = read("Multi File In Directory.torrent");
+        var full = (DictionaryBeValue) BeDecoder.decode(data);
+        var info = (DictionaryBeValue) full.get(new ByteStringBeValue("info"));
+        var files = (ListBeValue) info.get(new ByteStringBeValue("files"));
+
+        var extracted = BeDecoder.extract(new ByteArrayInputStream(data), "info/name", "info/files/*/length");
+        Assertions.assertEquals(List.of(info.get(new ByteStringBeValue("name"))), extracted.get("info/name"));
+
+        var expected = new ArrayList<Long>();
+        files.iterator().forEachRemaining(file -> expected.add(((NumberBeValue) ((DictionaryBeValue) file)
+                .get(new ByteStringBeValue("length"))).getValue()));
+        var lengths = new ArrayList<Long>();
+        extracted.get("info/files/*/length").forEach(length -> lengths.add(((NumberBeValue) length).getValue()));
+        Assertions.assertEquals(expected, lengths);
+    }
+
+}
@@ -0,0 +1,112 @@
+package link.tothetracker.lib.encode;
+
+import lombok.SneakyThrows;
+import link.tothetracker.lib.encode.type.ByteStringBeValue;
+import link.tothetracker.lib.encode.type.ListBeValue;
+import link.tothetracker.lib.encode.type.NumberBeValue;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author t3link
+ */
+class BeEncoderTest {
+
+    @SneakyThrows
+    private byte[] read(String fileName) {
+        try (var in = BeEncoderTest.class.getResourceAsStream("/source/" + fileName)) {
+            return in.readAllBytes();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "Single File.torrent",
+            "Multi File In Directory.torrent",
+            "Too Many File.torrent",
+            "complex qb utf8.torrent"
+    })
+    @SneakyThrows
+    void sinks(String fileName) {
+        var data = read(fileName);
+        // 流解码不记录原始片段, 全部重新编码
+        var value = BeDecoder.decode(new ByteArrayInputStream(data));
+        var expected = value.write();
+        Assertions.assertEquals(expected.length, value.encodedLength());
+
+        var out = new ByteArrayOutputStream();
+        var encoder = new BeEncoder(out);
+        encoder.write(value);
+        encoder.flush();
+        Assertions.assertArrayEquals(expected, out.toByteArray());
+
+        out.reset();
+        encoder = new BeEncoder(Channels.newChannel(out));
+        encoder.write(value);
+        encoder.flush();
+        Assertions.assertArrayEquals(expected, out.toByteArray());
+
+        var buffer = ByteBuffer.allocateDirect(expected.length);
+        new BeEncoder(buffer).write(value);
+        Assertions.assertFalse(buffer.hasRemaining());
+        Assertions.assertEquals(ByteBuffer.wrap(expected), buffer.flip());
+
+        // 事件直接转写
+        out.reset();
+        encoder = new BeEncoder(out);
+        BeReader.read(ByteBuffer.wrap(data), encoder);
+        encoder.flush();
+        Assertions.assertArrayEquals(expected, out.toByteArray());
+    }
+
+    @Test
+    void numbers() {
+        var values = new ArrayList<>(List.of(new NumberBeValue(0L), new NumberBeValue(-1L),
+                new NumberBeValue(Long.MIN_VALUE), new NumberBeValue(Long.MAX_VALUE)));
+        var list = new ListBeValue(new ArrayList<>(values));
+        Assertions.assertEquals(52, list.encodedLength());
+        Assertions.assertEquals("li0ei-1ei-9223372036854775808ei9223372036854775807ee",
+                new String(BeEncoder.encode(list), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void large() {
+        // 超过缓冲区的 byte string
+        var content = new byte[100_000];
+        var out = new ByteArrayOutputStream();
+        var encoder = new BeEncoder(out);
+        encoder.write(new ByteStringBeValue(content));
+        encoder.flush();
+        Assertions.assertEquals("100000:".length() + content.length, out.size());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"Single File.torrent", "Too Many File.torrent"})
+    @SneakyThrows
+    void digest(String fileName) {
+        var value = BeDecoder.decode(read(fileName));
+        var expected = value.write();
+        var sha1 = DigestUtils.getSha1Digest();
+
+        var digest = BeEncoder.digest(value, sha1, true);
+        Assertions.assertArrayEquals(expected, digest.bytes());
+        Assertions.assertArrayEquals(DigestUtils.sha1(expected), digest.hash());
+
+        // 同一个实例可以复用
+        digest = BeEncoder.digest(value, sha1, false);
+        Assertions.assertNull(digest.bytes());
+        Assertions.assertArrayEquals(DigestUtils.sha1(expected), digest.hash());
+    }
+
+}
@@ -0,0 +1,107 @@
+package link.tothetracker.lib.encode;
+
+import link.tothetracker.lib.LibRuntimeException;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author t3link
+ */
+class BePushDecoderTest {
+
+    @SneakyThrows
+    private byte[] read(String fileName) {
+        try (var in = BePushDecoderTest.class.getResourceAsStream("/source/" + fileName)) {
+            return in.readAllBytes();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 7, 4096})
+    @SneakyThrows
+    void chunked(int size) {
+        var data = read("Too Many File.torrent");
+        var expected = BeDecoder.decode(data).write();
+
+        var decoder = new BePushDecoder();
+        for (var offset = 0; offset < data.length; offset += size) {
+            var chunk = ByteBuffer.wrap(data, offset, Math.min(size, data.length - offset));
+            var done = decoder.feed(chunk);
+            Assertions.assertEquals(offset + size >= data.length, done);
+        }
+        Assertions.assertArrayEquals(expected, decoder.finish().write());
+    }
+
+    @Test
+    void invalid() {
+        var truncated = new BePushDecoder();
+        truncated.feed(ByteBuffer.wrap("d1:ai1".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertThrows(EOFException.class, truncated::finish);
+
+        var zero = new BePushDecoder();
+        var e = Assertions.assertThrows(LibRuntimeException.class,
+                () -> zero.feed(ByteBuffer.wrap("i-0e".getBytes(StandardCharsets.UTF_8))));
+        Assertions.assertEquals("'-0' not allowed!", e.getMessage());
+    }
+
+    @Test
+    void hugeLength() {
+        // 长度前缀很大但数据没到, 不会预先分配
+        var decoder = new BePushDecoder();
+        Assertions.assertFalse(decoder.feed(ByteBuffer.wrap("2147483647:".getBytes(StandardCharsets.UTF_8))));
+        Assertions.assertFalse(decoder.feed(ByteBuffer.wrap("abc".getBytes(StandardCharsets.UTF_8))));
+
+        var limited = new BePushDecoder();
+        limited.setMaxStringLength(4);
+        Assertions.assertTrue(limited.feed(ByteBuffer.wrap("4:abcd".getBytes(StandardCharsets.UTF_8))));
+        var pulled = new BeDecoder("5:abcde".getBytes(StandardCharsets.UTF_8));
+        pulled.setMaxStringLength(4);
+        var e = Assertions.assertThrows(LibRuntimeException.class, pulled::decode);
+        Assertions.assertEquals("byte string too long!", e.getMessage());
+        var pushed = new BePushDecoder();
+        pushed.setMaxStringLength(4);
+        e = Assertions.assertThrows(LibRuntimeException.class,
+                () -> pushed.feed(ByteBuffer.wrap("12:".getBytes(StandardCharsets.UTF_8))));
+        Assertions.assertEquals("byte string too long!", e.getMessage());
+    }
+
+    @Test
+    @SneakyThrows
+    void subscriber() {
+        var data = read("complex qb utf8.torrent");
+        var subscriber = new BeSubscriber();
+        try (var publisher = new SubmissionPublisher<ByteBuffer>()) {
+            publisher.subscribe(subscriber);
+            for (var offset = 0; offset < data.length; offset += 100) {
+                publisher.submit(ByteBuffer.wrap(data, offset, Math.min(100, data.length - offset)));
+            }
+        }
+
+        var value = subscriber.result().get(10, TimeUnit.SECONDS);
+        Assertions.assertArrayEquals(BeDecoder.decode(data).write(), value.write());
+    }
+
+    @Test
+    void subscriberError() {
+        var subscriber = new BeSubscriber();
+        try (var publisher = new SubmissionPublisher<ByteBuffer>()) {
+            publisher.subscribe(subscriber);
+            publisher.submit(ByteBuffer.wrap("d1:a".getBytes(StandardCharsets.UTF_8)));
+        }
+
+        var e = Assertions.assertThrows(ExecutionException.class,
+                () -> subscriber.result().get(10, TimeUnit.SECONDS));
+        Assertions.assertTrue(e.getCause() instanceof EOFException);
+    }
+
+}
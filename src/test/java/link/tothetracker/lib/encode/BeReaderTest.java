@@ -0,0 +1,101 @@
+package link.tothetracker.lib.encode;
+
+import link.tothetracker.lib.LibRuntimeException;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author t3link
+ */
+class BeReaderTest {
+
+    private static final String DATA = "d4:infod5:filesld6:lengthi1e4:pathl1:aeeee4:name2:xye";
+
+    /**
+     * 把事件记录成文本, 方便比较
+     */
+    private static class Recorder implements BeEventHandler {
+
+        private final List<String> events = new ArrayList<>();
+
+        @Override
+        public void startDictionary() {
+            events.add("d");
+        }
+
+        @Override
+        public void key(ByteBuffer key) {
+            events.add("k:" + StandardCharsets.UTF_8.decode(key));
+        }
+
+        @Override
+        public void bytes(ByteBuffer value) {
+            events.add("s:" + StandardCharsets.UTF_8.decode(value));
+        }
+
+        @Override
+        public void number(long value) {
+            events.add("i:" + value);
+        }
+
+        @Override
+        public void startList() {
+            events.add("l");
+        }
+
+        @Override
+        public void end() {
+            events.add("e");
+        }
+
+    }
+
+    @Test
+    @SneakyThrows
+    void events() {
+        var expected = List.of("d", "k:info", "d", "k:files", "l", "d", "k:length", "i:1",
+                "k:path", "l", "s:a", "e", "e", "e", "e", "k:name", "s:xy", "e");
+
+        var bytes = DATA.getBytes(StandardCharsets.UTF_8);
+        var buffered = new Recorder();
+        BeReader.read(ByteBuffer.wrap(bytes), buffered);
+        Assertions.assertEquals(expected, buffered.events);
+
+        var streamed = new Recorder();
+        BeReader.read(new ByteArrayInputStream(bytes), streamed);
+        Assertions.assertEquals(expected, streamed.events);
+    }
+
+    @Test
+    @SneakyThrows
+    void skip() {
+        var reader = new BeReader(DATA.getBytes(StandardCharsets.UTF_8));
+        Assertions.assertEquals(BeToken.DICTIONARY, reader.next());
+        Assertions.assertEquals(BeToken.KEY, reader.next());
+        Assertions.assertEquals(BeToken.DICTIONARY, reader.next());
+        reader.skip();
+        Assertions.assertEquals(1, reader.depth());
+
+        Assertions.assertEquals(BeToken.KEY, reader.next());
+        Assertions.assertEquals("name", StandardCharsets.UTF_8.decode(reader.bytes()).toString());
+        Assertions.assertEquals(BeToken.BYTES, reader.next());
+        Assertions.assertEquals(BeToken.END, reader.next());
+        Assertions.assertEquals(BeToken.EOF, reader.next());
+        Assertions.assertEquals(DATA.length(), reader.position());
+    }
+
+    @Test
+    void invalid() {
+        var reader = new BeReader("di1ei2ee".getBytes(StandardCharsets.UTF_8));
+        var e = Assertions.assertThrows(LibRuntimeException.class, () -> reader.read(new Recorder()));
+        Assertions.assertEquals("invalid key in dictionary!", e.getMessage());
+    }
+
+}
@@ -0,0 +1,47 @@
+package link.tothetracker.lib.torrent.file;
+
+import link.tothetracker.lib.util.JsonUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * 和 ObjectMapper 对比编解码的耗时
+ *
+ * 不是单元测试, surefire 不会执行, 需要时手动运行 main
+ *
+ * @author t3link
+ */
+final class FileNodeCodecBenchmark {
+
+    private FileNodeCodecBenchmark() {}
+
+    public static void main(String[] args) {
+        var root = FileNodeCodecTest.root("Too Many File.torrent");
+        var json = JsonUtil.toJson(root);
+        var cbor = FileNodeCodec.toCbor(root);
+        System.out.format("json: %d bytes, cbor: %d bytes%n", json.getBytes(StandardCharsets.UTF_8).length, cbor.length);
+
+        time("jackson encode", () -> JsonUtil.toJson(root));
+        time("streaming json encode", () -> FileNodeCodec.toJson(root));
+        time("cbor encode", () -> FileNodeCodec.toCbor(root));
+        time("jackson decode", () -> JsonUtil.fromJson(json, FileNode.class));
+        time("streaming json decode", () -> FileNodeCodec.fromJson(json));
+        time("cbor decode", () -> FileNodeCodec.fromCbor(cbor));
+    }
+
+    private static void time(String name, Supplier<Object> task) {
+        // 预热
+        for (var i = 0; i < 50; i++) {
+            task.get();
+        }
+        var rounds = 200;
+        var start = System.nanoTime();
+        for (var i = 0; i < rounds; i++) {
+            Objects.requireNonNull(task.get());
+        }
+        System.out.format("%-22s %8.3f ms/op%n", name, (System.nanoTime() - start) / 1e6 / rounds);
+    }
+
+}
@@ -0,0 +1,91 @@
+package link.tothetracker.lib.torrent.file;
+
+import link.tothetracker.lib.LibRuntimeException;
+import link.tothetracker.lib.torrent.spec.LibParser;
+import link.tothetracker.lib.util.JsonUtil;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author t3link
+ */
+class FileNodeCodecTest {
+
+    @SneakyThrows
+    static FileNode root(String fileName) {
+        try (var in = LibParser.class.getResourceAsStream("/source/" + fileName)) {
+            return LibParser.read(in.readAllBytes(), "example").files().getRoot();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"Single File.torrent", "Multi File In Directory.torrent", "Too Many File.torrent",
+            "complex qb utf8.torrent"})
+    void compatible(String fileName) {
+        var root = root(fileName);
+        var json = JsonUtil.toJson(root);
+
+        // 和 ObjectMapper 的输出逐字节一致, 读出的结果也一致
+        Assertions.assertEquals(json, FileNodeCodec.toJson(root));
+        Assertions.assertEquals(json, JsonUtil.toJson(FileNodeCodec.fromJson(json)));
+
+        var cbor = FileNodeCodec.toCbor(root);
+        Assertions.assertEquals(json, JsonUtil.toJson(FileNodeCodec.fromCbor(cbor)));
+        Assertions.assertTrue(cbor.length < json.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Test
+    void unknownFields() {
+        // 和 JsonUtil 一样忽略未知的字段
+        var node = FileNodeCodec.fromJson("{\"id\":1,\"extra\":{\"a\":[1]},\"name\":\"x\",\"size\":null}");
+        Assertions.assertEquals(1, node.getId());
+        Assertions.assertEquals("x", node.getName());
+        Assertions.assertNull(node.getSize());
+
+        // {"x": [1, "a"], "id": -6}
+        node = FileNodeCodec.fromCbor(new byte[]{(byte) 0xA2, 0x61, 'x', (byte) 0x82, 0x01, 0x61, 'a',
+                0x62, 'i', 'd', 0x25});
+        Assertions.assertEquals(-6, node.getId());
+    }
+
+    @Test
+    void indefiniteLength() {
+        // 不定长的 map / array
+        var node = FileNodeCodec.fromCbor(new byte[]{(byte) 0xBF, 0x62, 'i', 'd', 0x05,
+                0x68, 'c', 'h', 'i', 'l', 'd', 'r', 'e', 'n', (byte) 0x9F, (byte) 0xA0, (byte) 0xFF, (byte) 0xFF});
+        Assertions.assertEquals(5, node.getId());
+        Assertions.assertEquals(1, node.getChildren().size());
+    }
+
+    @Test
+    void truncated() {
+        Assertions.assertThrows(LibRuntimeException.class, () -> FileNodeCodec.fromCbor(new byte[]{(byte) 0xA1, 0x62}));
+    }
+
+    @Test
+    void rawNumbers() {
+        // {"f": -1.5, "u": 2^64 - 1, "id": 3}, 跳过时不检查数值范围
+        var node = FileNodeCodec.fromCbor(new byte[]{(byte) 0xA3,
+                0x61, 'f', (byte) 0xFB, (byte) 0xBF, (byte) 0xF8, 0, 0, 0, 0, 0, 0,
+                0x61, 'u', 0x1B, -1, -1, -1, -1, -1, -1, -1, -1,
+                0x62, 'i', 'd', 0x03});
+        Assertions.assertEquals(3, node.getId());
+
+        // {"id": 2^32}, 超出 int 的 id 不截断
+        var exception = Assertions.assertThrows(LibRuntimeException.class, () -> FileNodeCodec.fromCbor(
+                new byte[]{(byte) 0xA1, 0x62, 'i', 'd', 0x1B, 0, 0, 0, 1, 0, 0, 0, 0}));
+        Assertions.assertEquals("invalid file node cbor!", exception.getMessage());
+    }
+
+    @Test
+    void nonObjectChildren() {
+        // children 里只能是对象
+        Assertions.assertThrows(LibRuntimeException.class, () -> FileNodeCodec.fromJson("{\"children\":[{},1]}"));
+    }
+
+}
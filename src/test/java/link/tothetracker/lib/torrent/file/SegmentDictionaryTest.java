@@ -0,0 +1,54 @@
+package link.tothetracker.lib.torrent.file;
+
+import link.tothetracker.lib.util.JsonUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+/**
+ * @author t3link
+ */
+class SegmentDictionaryTest {
+
+    private static FileNode tree(String name) {
+        var files = new T3tFiles();
+        files.setDirectory(true);
+        files.setName(name);
+        // 每次都是新的 String 对象
+        files.add(new T3tFile(1L, List.of(new String("BDMV"), new String("STREAM"), new String("00000.m2ts"))));
+        files.add(new T3tFile(2L, List.of(new String("Sample"), new String("sample.mkv"))));
+        return T3tTree.tree(files);
+    }
+
+    @Test
+    void shared() {
+        var dictionary = new SegmentDictionary();
+        SegmentDictionary.setShared(dictionary);
+        try {
+            var first = tree("first");
+            var second = tree("second");
+            var bdmv = first.getChildren().get(0);
+            Assertions.assertSame(bdmv.getName(), second.getChildren().get(0).getName());
+            Assertions.assertSame(bdmv.getChildren().get(0).getName(), second.getChildren().get(0).getChildren().get(0).getName());
+
+            var stats = dictionary.stats();
+            Assertions.assertEquals(5, stats.size());
+            Assertions.assertEquals(10, stats.lookups());
+            Assertions.assertEquals(5, stats.hits());
+            Assertions.assertTrue(stats.savedBytes() > 0);
+
+            // 反序列化的节点同样共用
+            var des = JsonUtil.fromJson(JsonUtil.toJson(first), FileNode.class);
+            Assertions.assertSame(bdmv.getName(), des.getChildren().get(0).getName());
+        } finally {
+            SegmentDictionary.setShared(null);
+        }
+
+        // 关闭以后不再经过字典
+        var lookups = dictionary.stats().lookups();
+        tree("third");
+        Assertions.assertEquals(lookups, dictionary.stats().lookups());
+    }
+
+}
@@ -0,0 +1,54 @@
+package link.tothetracker.lib.torrent.file;
+
+import link.tothetracker.lib.LibRuntimeException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+/**
+ * @author t3link
+ */
+class T3tFilesTest {
+
+    @Test
+    void columnar() {
+        var files = new T3tFiles();
+        files.add(new T3tFile(1L, List.of("CD1", "Sample", "a.mkv")));
+        files.add(new T3tFile(2L, List.of("CD2", "Sample", "a.mkv")));
+        files.add(new T3tFile(3L, List.of("CD1", "Sample", "b.nfo")));
+
+        // 目录只存一次, 相同的名称共用一个 String
+        Assertions.assertEquals(7, files.nodeCount());
+        var first = files.getContainer().get(0).path();
+        var second = files.getContainer().get(1).path();
+        Assertions.assertSame(first.get(1), second.get(1));
+        Assertions.assertSame(first.get(2), second.get(2));
+
+        Assertions.assertEquals(3, files.getNum());
+        Assertions.assertEquals(List.of(
+                new T3tFile(1L, List.of("CD1", "Sample", "a.mkv")),
+                new T3tFile(2L, List.of("CD2", "Sample", "a.mkv")),
+                new T3tFile(3L, List.of("CD1", "Sample", "b.nfo"))), files.getContainer());
+
+        // 释放索引以后还可以继续添加
+        files.compact();
+        files.add(new T3tFile(4L, List.of("CD2", "c.srt")));
+        Assertions.assertEquals(8, files.nodeCount());
+        Assertions.assertEquals(List.of("CD2", "c.srt"), files.file(3).path());
+
+        // 节点下标 + 1 就是 id
+        files.setDirectory(true);
+        files.setName("example");
+        var root = T3tTree.tree(files);
+        var cd2 = root.getChildren().get(1);
+        Assertions.assertEquals("CD2", cd2.getName());
+        Assertions.assertEquals("CD2", files.name(cd2.getId() - 1));
+
+        // 空路径没有叶子节点, 直接拒绝
+        var exception = Assertions.assertThrows(LibRuntimeException.class, () -> files.add(new T3tFile(5L, List.of())));
+        Assertions.assertEquals("'path' is empty list!", exception.getMessage());
+        Assertions.assertEquals(4, files.getNum());
+    }
+
+}
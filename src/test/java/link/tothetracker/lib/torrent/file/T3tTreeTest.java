@@ -0,0 +1,147 @@
+package link.tothetracker.lib.torrent.file;
+
+import link.tothetracker.lib.LibRuntimeException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author t3link
+ */
+class T3tTreeTest {
+
+    private static T3tFiles files(String name, List<List<String>> paths) {
+        var files = new T3tFiles();
+        files.setDirectory(true);
+        files.setName(name);
+        var length = 1L;
+        for (var path : paths) {
+            files.add(new T3tFile(length++, path));
+        }
+        return files;
+    }
+
+    @Test
+    void tree() {
+        var root = T3tTree.tree(files("example", List.of(
+                List.of("a", "b", "c.txt"),
+                List.of("a", "d.txt"),
+                List.of("e.txt"),
+                List.of("a", "b", "f"))));
+
+        // 每个文件新出现的节点从叶子往上编号
+        var a = root.getChildren().get(0);
+        var b = a.getChildren().get(0);
+        Assertions.assertEquals(List.of("a", "e.txt"), names(root));
+        Assertions.assertEquals(List.of("b", "d.txt"), names(a));
+        Assertions.assertEquals(List.of("c.txt", "f"), names(b));
+        Assertions.assertEquals(0, root.getId());
+        Assertions.assertEquals(3, a.getId());
+        Assertions.assertEquals(2, b.getId());
+        Assertions.assertEquals(1, b.getChildren().get(0).getId());
+        Assertions.assertEquals(4, a.getChildren().get(1).getId());
+        Assertions.assertEquals(5, root.getChildren().get(1).getId());
+        Assertions.assertEquals(6, b.getChildren().get(1).getId());
+
+        Assertions.assertEquals(1L + 2L + 4L, a.getLength());
+        Assertions.assertEquals("1:a,1:b,5:c.txt", b.getChildren().get(0).getNodeKey());
+        Assertions.assertEquals("", root.getNodeKey());
+    }
+
+    @Test
+    void print() throws IOException {
+        var root = T3tTree.tree(files("example", List.of(
+                List.of("a", "b", "c.txt"),
+                List.of("a", "d.txt"),
+                List.of("e.txt"),
+                List.of("a", "b", "f"))));
+
+        Assertions.assertEquals("""
+                example 10.00 B
+                |--- a 7.00 B
+                |   |--- b 5.00 B
+                |   |   |--- c.txt 1.00 B
+                |   |   |--- f 4.00 B
+                |   |--- d.txt 2.00 B
+                |--- e.txt 3.00 B
+                """, T3tTree.print(root));
+        // 从子树开始打印, 前缀和整棵树里一样
+        Assertions.assertEquals("""
+                |   |--- b 5.00 B
+                |   |   |--- c.txt 1.00 B
+                |   |   |--- f 4.00 B
+                """, T3tTree.print(root.getChildren().get(0).getChildren().get(0)));
+
+        var out = new StringBuilder();
+        T3tTree.print(root, out, new T3tTree.Limits(100, 1, 100));
+        Assertions.assertEquals("""
+                example 10.00 B
+                |--- a 7.00 B
+                |   |--- ... (2 more)
+                |--- e.txt 3.00 B
+                """, out.toString());
+
+        out.setLength(0);
+        T3tTree.print(root, out, new T3tTree.Limits(100, 100, 1));
+        Assertions.assertEquals("""
+                example 10.00 B
+                |--- a 7.00 B
+                |   |--- b 5.00 B
+                |   |   |--- c.txt 1.00 B
+                |   |   |--- ... (1 more)
+                |   |--- ... (1 more)
+                |--- ... (1 more)
+                """, out.toString());
+
+        out.setLength(0);
+        T3tTree.print(root, out, new T3tTree.Limits(3, 100, 100));
+        Assertions.assertEquals("""
+                example 10.00 B
+                |--- a 7.00 B
+                |   |--- b 5.00 B
+                ...
+                """, out.toString());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new T3tTree.Limits(100, 100, -1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new T3tTree.Limits(-1, 100, 100));
+    }
+
+    @Test
+    void dupe() {
+        // 不同父目录下的同名节点不冲突
+        T3tTree.tree(files("example", List.of(List.of("a", "think"), List.of("b", "think"))));
+
+        var exception = Assertions.assertThrows(LibRuntimeException.class,
+                () -> T3tTree.tree(files("example", List.of(List.of("a", "think"), List.of("a", "Think")))));
+        Assertions.assertEquals("dupe name 'Think', case-sensitive is not supported now!", exception.getMessage());
+
+        Assertions.assertThrows(LibRuntimeException.class,
+                () -> T3tTree.tree(files("example", List.of(List.of("Think"), List.of("think", "a")))));
+    }
+
+    @Test
+    void deep() {
+        var path = new ArrayList<String>();
+        for (var i = 0; i < 2_000; i++) {
+            path.add("d" + i);
+        }
+        var leaf = new ArrayList<>(path);
+        leaf.add("file");
+        var root = T3tTree.tree(files("example", List.of(leaf, List.of("other"))));
+
+        Assertions.assertEquals(2, root.getChildren().size());
+        Assertions.assertEquals(2_001, root.getChildren().get(0).getId());
+    }
+
+    private static List<String> names(FileNode node) {
+        var names = new ArrayList<String>();
+        for (var child : node.getChildren()) {
+            names.add(child.getName());
+        }
+        return names;
+    }
+
+}
@@ -2,24 +2,52 @@ package link.tothetracker.lib.torrent.spec;
 
 import link.tothetracker.lib.LibRuntimeException;
 import link.tothetracker.lib.constant.ByteUnit;
+import link.tothetracker.lib.encode.BeDecoder;
+import link.tothetracker.lib.encode.type.AbstractBeValue;
+import link.tothetracker.lib.encode.type.ByteStringBeValue;
+import link.tothetracker.lib.encode.type.DictionaryBeValue;
+import link.tothetracker.lib.encode.type.ListBeValue;
+import link.tothetracker.lib.encode.type.NumberBeValue;
 import link.tothetracker.lib.torrent.T3tInfo;
 import link.tothetracker.lib.torrent.file.FileNode;
 import link.tothetracker.lib.torrent.file.T3tTree;
 import link.tothetracker.lib.util.JsonUtil;
 import lombok.SneakyThrows;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.IllegalBlockingModeException;
+import java.nio.channels.Pipe;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Random;
 import java.util.stream.Stream;
 
 /**
@@ -61,6 +89,64 @@ class LibParserTest {
         okRead("/source/", fileInfo);
     }
 
+    @ParameterizedTest
+    @MethodSource("okTorrents")
+    @SneakyThrows
+    void test_read_path(String path, String name, int num, long length, String hash) {
+        var resource = LibParser.class.getResource("/source/" + path);
+        Assumptions.assumeTrue(resource != null);
+
+        // 映射文件解析的结果和流解析一致
+        var mapped = LibParser.read(Path.of(resource.toURI()), "example");
+        var streamed = LibParser.read(read("/source/", path), "example");
+        Assertions.assertEquals(hash, mapped.hash());
+        Assertions.assertArrayEquals(streamed.bytes(), mapped.bytes());
+        Assertions.assertEquals(num, mapped.files().getNum());
+        Assertions.assertEquals(T3tTree.print(streamed.files().getRoot()),
+                T3tTree.print(mapped.files().getRoot()));
+    }
+
+    @ParameterizedTest
+    @MethodSource("okTorrents")
+    @SneakyThrows
+    void test_rewrite(String path, String name, int num, long length, String hash) {
+        var input = read("/source/", path);
+        Assumptions.assumeTrue(input != null);
+        byte[] data;
+        try (input) {
+            data = input.readAllBytes();
+        }
+
+        // 流式改写和构造树的结果一致
+        var rewritten = InfoRewriter.rewrite(ByteBuffer.wrap(data), "example");
+        Assertions.assertNotNull(rewritten);
+        var parsed = LibParser.read(BeDecoder.decode(data), "example");
+        Assertions.assertEquals(hash, rewritten.hash());
+        Assertions.assertArrayEquals(parsed.bytes(), rewritten.bytes());
+        Assertions.assertEquals(T3tTree.print(parsed.files().getRoot()),
+                T3tTree.print(rewritten.files().getRoot()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            // 顶层 key 无序
+            "d4:infod6:lengthi1e4:name1:a12:piece lengthi16384e6:pieces0:e8:announce1:xe",
+            // info 里 key 无序
+            "d4:infod4:name1:a6:lengthi1e12:piece lengthi16384e6:pieces0:ee",
+            // 文件里 key 无序
+            "d4:infod5:filesld4:pathl1:be6:lengthi1eee4:name1:a12:piece lengthi16384e6:pieces0:ee"
+    })
+    @SneakyThrows
+    void test_rewrite_fallback(String data) {
+        var bytes = data.getBytes(StandardCharsets.UTF_8);
+        // 不能流式处理, 回退到构造树, 结果还是一致的
+        Assertions.assertNull(InfoRewriter.rewrite(ByteBuffer.wrap(bytes), "example"));
+        var expected = LibParser.read(BeDecoder.decode(bytes), "example");
+        var info = LibParser.read(bytes, "example");
+        Assertions.assertArrayEquals(expected.bytes(), info.bytes());
+        Assertions.assertEquals(expected.hash(), info.hash());
+    }
+
     private T3tInfo okRead(String directory, FileInfo fileInfo) {
         var fileName = fileInfo.path;
         var input = read(directory, fileName);
@@ -201,6 +287,7 @@ class LibParserTest {
 
         var extra = new ExtraInfo("https://example.com", null);
         var bytes = LibParser.write(info, extra);
+        Assertions.assertEquals(bytes.length, LibParser.length(info, extra));
 
         var targetPath = "src/test/resources/out/" + path;
         var file = new File(targetPath);
@@ -213,6 +300,296 @@ class LibParserTest {
     }
 
 
+    @ParameterizedTest
+    @MethodSource("okTorrents")
+    @SneakyThrows
+    void test_template(String path, String name, int num, long length, String hash) {
+        var input = read("/source/", path);
+        Assumptions.assumeTrue(input != null);
+        var info = LibParser.read(input, "example");
+        var template = TorrentTemplate.compile(info);
+
+        for (var passkey : List.of("a", "0123456789abcdef")) {
+            var extra = new ExtraInfo("https://example.com/announce?passkey=" + passkey, Map.of("user", passkey));
+            var rendered = template.render(extra);
+            var out = new ByteArrayOutputStream();
+            for (var buffer : rendered) {
+                var bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                out.write(bytes);
+            }
+
+            // 和直接生成的结果一致, 并且再次解析得到同样的 hash
+            var expected = LibParser.write(info, extra);
+            Assertions.assertArrayEquals(expected, out.toByteArray());
+            Assertions.assertArrayEquals(expected, template.write(extra));
+            Assertions.assertEquals(expected.length, template.length(extra));
+            Assertions.assertEquals(hash, LibParser.read(expected, "example").hash());
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("okTorrents")
+    @SneakyThrows
+    void test_write_channel(String path, String name, int num, long length, String hash, @TempDir Path directory) {
+        var input = read("/source/", path);
+        Assumptions.assumeTrue(input != null);
+        var info = LibParser.read(input, "example");
+        var extra = new ExtraInfo("https://example.com", Map.of("user", "1"));
+        var expected = LibParser.write(info, extra);
+
+        var target = directory.resolve("heap.torrent");
+        try (var channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            Assertions.assertEquals(expected.length, LibParser.write(TorrentTemplate.compile(info), extra, channel));
+        }
+        Assertions.assertArrayEquals(expected, Files.readAllBytes(target));
+
+        // direct 模板可以反复写出
+        var template = TorrentTemplate.compile(info, true);
+        for (var i = 0; i < 2; i++) {
+            target = directory.resolve("direct" + i + ".torrent");
+            try (var channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                template.write(extra, channel);
+            }
+            Assertions.assertArrayEquals(expected, Files.readAllBytes(target));
+        }
+
+        // 非阻塞的 channel 可能写不完, 直接拒绝
+        var pipe = Pipe.open();
+        try (var sink = pipe.sink()) {
+            sink.configureBlocking(false);
+            Assertions.assertThrows(IllegalBlockingModeException.class, () -> template.write(extra, sink));
+        } finally {
+            pipe.source().close();
+        }
+    }
+
+    // endregion
+
+    // region 测试批量解析
+
+    @Test
+    @SneakyThrows
+    void test_read_all() {
+        var paths = new ArrayList<Path>();
+        var hashes = new ArrayList<String>();
+        okTorrents().forEach(arguments -> {
+            var resource = LibParser.class.getResource("/source/" + arguments.get()[0]);
+            if (resource != null) {
+                paths.add(Path.of(URI.create(resource.toString())));
+                hashes.add((String) arguments.get()[4]);
+            }
+        });
+        // 坏种子不影响其他种子
+        var broken = Path.of(LibParser.class.getResource("/source/invalid/broken.torrent").toURI());
+        paths.add(1, broken);
+        hashes.add(1, null);
+
+        var results = LibParser.readAll(paths, "example");
+        Assertions.assertEquals(paths.size(), results.size());
+        for (var i = 0; i < results.size(); i++) {
+            var result = results.get(i);
+            Assertions.assertEquals(i, result.index());
+            Assertions.assertSame(paths.get(i), result.input());
+            if (hashes.get(i) == null) {
+                Assertions.assertFalse(result.ok());
+                Assertions.assertEquals("unknown indicator!", result.error().getMessage());
+            } else {
+                Assertions.assertTrue(result.ok());
+                Assertions.assertEquals(hashes.get(i), result.info().hash());
+            }
+        }
+    }
+
+    @Test
+    void test_read_all_streams() {
+        var names = List.of("Single File.torrent", "missing.torrent", "Multi File In Directory.torrent");
+        var completed = new ArrayList<ParseResult<String>>();
+        LibParser.readAll(names, name -> read("/source/", name), "example", 2, completed::add);
+
+        Assertions.assertEquals(names.size(), completed.size());
+        completed.sort(Comparator.comparingInt(ParseResult::index));
+        Assertions.assertTrue(completed.get(0).ok());
+        Assertions.assertFalse(completed.get(1).ok());
+        Assertions.assertTrue(completed.get(2).ok());
+
+        // Error 不当作解析失败, 在调用线程里重新抛出
+        var error = Assertions.assertThrows(Error.class, () -> LibParser.readAll(names, name -> {
+            throw new Error(name);
+        }, "example", 2, completed::add));
+        Assertions.assertTrue(names.contains(error.getMessage()));
+    }
+
+    // endregion
+
+    // region 测试 v2 / hybrid
+
+    private static final int BLOCK = 16 * 1024;
+
+    private static byte[] sha256(byte[]... parts) {
+        var digest = DigestUtils.getSha256Digest();
+        for (var part : parts) {
+            digest.update(part);
+        }
+        return digest.digest();
+    }
+
+    /**
+     * 按 BEP 52 从数据计算 merkle 树, 返回 [pieces root, piece layer]
+     */
+    private static byte[][] merkle(byte[] data, int pieceLength) {
+        var leaves = new ArrayList<byte[]>();
+        for (var offset = 0; offset < data.length; offset += BLOCK) {
+            leaves.add(sha256(Arrays.copyOfRange(data, offset, Math.min(offset + BLOCK, data.length))));
+        }
+        var perPiece = pieceLength / BLOCK;
+        while (leaves.size() % perPiece != 0 || Integer.bitCount(leaves.size() / perPiece) != 1) {
+            leaves.add(new byte[32]);
+        }
+
+        var pieces = (data.length + pieceLength - 1) / pieceLength;
+        var layer = new byte[pieces * 32];
+        var nodes = leaves;
+        for (var width = 1; nodes.size() > 1; width *= 2) {
+            if (width == perPiece) {
+                for (var i = 0; i < pieces; i++) {
+                    System.arraycopy(nodes.get(i), 0, layer, i * 32, 32);
+                }
+            }
+            var next = new ArrayList<byte[]>();
+            for (var i = 0; i < nodes.size(); i += 2) {
+                next.add(sha256(nodes.get(i), nodes.get(i + 1)));
+            }
+            nodes = next;
+        }
+        if (perPiece == leaves.size()) {
+            System.arraycopy(nodes.get(0), 0, layer, 0, 32);
+        }
+        return new byte[][]{nodes.get(0), layer};
+    }
+
+    private static DictionaryBeValue dict(Object... entries) {
+        var dict = new DictionaryBeValue();
+        for (var i = 0; i < entries.length; i += 2) {
+            var value = entries[i + 1];
+            AbstractBeValue bev;
+            if (value instanceof Long number) {
+                bev = new NumberBeValue(number);
+            } else if (value instanceof String string) {
+                bev = new ByteStringBeValue(string);
+            } else if (value instanceof byte[] bytes) {
+                bev = new ByteStringBeValue(bytes);
+            } else {
+                bev = (AbstractBeValue) value;
+            }
+            dict.put(entries[i] instanceof byte[] key ? new ByteStringBeValue(key) : new ByteStringBeValue((String) entries[i]), bev);
+        }
+        return dict;
+    }
+
+    private static byte[] data(int length) {
+        var data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * @param hybrid 是否同时带上 v1 的 pieces / files (含 padding 文件)
+     */
+    private static byte[] v2Torrent(int pieceLength, boolean hybrid, boolean corrupt) {
+        var big = data(100_000);
+        var small = data(100);
+        var bigTree = merkle(big, pieceLength);
+        var smallTree = merkle(small, pieceLength);
+        if (corrupt) {
+            bigTree[1][0] ^= 1;
+        }
+
+        var tree = dict(
+                "a.bin", dict("", dict("length", (long) big.length, "pieces root", bigTree[0], "attr", "x")),
+                "dir", dict("b.txt", dict("", dict("length", (long) small.length, "pieces root", smallTree[0])))
+        );
+        var info = dict(
+                "file tree", tree,
+                "meta version", 2L,
+                "name", "example",
+                "piece length", (long) pieceLength,
+                "comment", "dropped"
+        );
+        if (hybrid) {
+            var pad = pieceLength - big.length % pieceLength;
+            var files = new ListBeValue(new ArrayList<>(List.of(
+                    dict("length", (long) big.length, "path", new ListBeValue(new ArrayList<>(List.of(
+                            new ByteStringBeValue("a.bin"))))),
+                    dict("attr", "p", "length", (long) pad, "path", new ListBeValue(new ArrayList<>(List.of(
+                            new ByteStringBeValue(".pad"), new ByteStringBeValue(String.valueOf(pad)))))),
+                    dict("length", (long) small.length, "path", new ListBeValue(new ArrayList<>(List.of(
+                            new ByteStringBeValue("dir"), new ByteStringBeValue("b.txt")))))
+            )));
+            var pieces = (big.length + pad + small.length + pieceLength - 1) / pieceLength;
+            info.put(new ByteStringBeValue("files"), files);
+            info.put(new ByteStringBeValue("pieces"), new ByteStringBeValue(new byte[pieces * 20]));
+        }
+
+        return dict(
+                "announce", "https://example.com",
+                "info", info,
+                "piece layers", dict(bigTree[0], bigTree[1])
+        ).write();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {BLOCK, BLOCK * 2, BLOCK * 4})
+    void test_v2(int pieceLength) {
+        var info = LibParser.read(v2Torrent(pieceLength, false, false), "example");
+
+        // 纯 v2 种子用截断的 SHA-256
+        Assertions.assertEquals(Hex.encodeHexString(sha256(info.bytes())), info.hashV2());
+        Assertions.assertEquals(info.hashV2().substring(0, 40), info.hash());
+        Assertions.assertNotNull(info.pieceLayers());
+
+        var files = info.files();
+        Assertions.assertEquals(2, files.getNum());
+        Assertions.assertTrue(files.isDirectory());
+        Assertions.assertEquals("example", files.getName());
+        Assertions.assertEquals(List.of("dir", "b.txt"), files.getContainer().get(1).path());
+        Assertions.assertEquals(100_100L, files.getRoot().getLength());
+        // 未知的字段被去掉
+        Assertions.assertFalse(new String(info.bytes(), StandardCharsets.ISO_8859_1).contains("attr"));
+
+        // 重新生成的种子带着 piece layers, 解析结果一致
+        var bytes = LibParser.write(info, new ExtraInfo("https://example.com", null));
+        var again = LibParser.read(bytes, "example");
+        Assertions.assertEquals(info.hashV2(), again.hashV2());
+        Assertions.assertArrayEquals(info.pieceLayers(), again.pieceLayers());
+    }
+
+    @Test
+    void test_hybrid() {
+        var info = LibParser.read(v2Torrent(BLOCK * 2, true, false), "example");
+
+        Assertions.assertEquals(DigestUtils.sha1Hex(info.bytes()), info.hash());
+        Assertions.assertEquals(Hex.encodeHexString(sha256(info.bytes())), info.hashV2());
+        // padding 文件不算在文件列表里, 但是保留在 v1 的 files 中
+        Assertions.assertEquals(2, info.files().getNum());
+        Assertions.assertTrue(new String(info.bytes(), StandardCharsets.ISO_8859_1).contains("4:attr1:p"));
+    }
+
+    @Test
+    void test_v2_corrupt() {
+        var data = v2Torrent(BLOCK * 2, false, true);
+        var e = Assertions.assertThrows(LibRuntimeException.class, () -> LibParser.read(data, "example"));
+        Assertions.assertEquals("'piece layers' does not match 'pieces root'!", e.getMessage());
+    }
+
+    @Test
+    void test_merkle_parallel() {
+        // 超过单线程阈值的一层, 拆分计算的结果和逐层计算一致
+        var pieceLength = BLOCK;
+        var tree = merkle(data(BLOCK * 3000 + 123), pieceLength);
+        Assertions.assertArrayEquals(tree[0], PieceLayers.root(ByteBuffer.wrap(tree[1]), pieceLength));
+    }
+
     // endregion
 
 }
\ No newline at end of file
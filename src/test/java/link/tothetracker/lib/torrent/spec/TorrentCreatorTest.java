@@ -0,0 +1,121 @@
+package link.tothetracker.lib.torrent.spec;
+
+import link.tothetracker.lib.LibRuntimeException;
+import link.tothetracker.lib.torrent.file.T3tTree;
+import lombok.SneakyThrows;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * @author t3link
+ */
+class TorrentCreatorTest {
+
+    /**
+     * 按长度生成固定的随机数据, TorrentRecheckTest 也用它
+     */
+    static byte[] data(int length) {
+        var data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * 逐个 piece 顺序计算, 作为并行结果的对照
+     */
+    private static byte[] pieces(byte[] data, int pieceLength) {
+        var out = new ByteArrayOutputStream();
+        for (var offset = 0; offset < data.length; offset += pieceLength) {
+            out.writeBytes(DigestUtils.sha1(Arrays.copyOfRange(data, offset, Math.min(offset + pieceLength, data.length))));
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    @SneakyThrows
+    void directory(@TempDir Path temp) {
+        var root = Files.createDirectory(temp.resolve("example"));
+        Files.createDirectories(root.resolve("b/c"));
+        var a = data(10_000);
+        var b = data(30_000);
+        var c = data(5_000);
+        Files.write(root.resolve("a.bin"), a);
+        Files.write(root.resolve("b/b.bin"), b);
+        Files.write(root.resolve("b/c/c.bin"), c);
+        // 空文件被跳过
+        Files.write(root.resolve("empty"), new byte[0]);
+
+        var creator = new TorrentCreator(root);
+        creator.setPieceLength(16 * 1024);
+        creator.setAnnounce("https://example.com");
+        var torrent = creator.create();
+        var info = creator.create("example");
+
+        // 和解析制作出的种子的结果一致
+        var parsed = LibParser.read(torrent, "example");
+        Assertions.assertEquals(parsed.hash(), info.hash());
+        Assertions.assertArrayEquals(parsed.bytes(), info.bytes());
+        Assertions.assertEquals(3, info.files().getNum());
+        Assertions.assertEquals("example", info.files().getName());
+        Assertions.assertTrue(info.files().isDirectory());
+        Assertions.assertEquals(T3tTree.print(parsed.files().getRoot()), T3tTree.print(info.files().getRoot()));
+
+        // 跨文件边界的 piece
+        var all = new ByteArrayOutputStream();
+        all.writeBytes(a);
+        all.writeBytes(b);
+        all.writeBytes(c);
+        var expected = pieces(all.toByteArray(), 16 * 1024);
+        var pieces = Arrays.copyOfRange(torrent, indexOf(torrent, "6:pieces") + 8, torrent.length);
+        var header = (expected.length + ":").length();
+        Assertions.assertArrayEquals(expected, Arrays.copyOfRange(pieces, header, header + expected.length));
+    }
+
+    @Test
+    @SneakyThrows
+    void single(@TempDir Path temp) {
+        var file = temp.resolve("sample.mkv");
+        var data = data(100_000);
+        Files.write(file, data);
+
+        var info = new TorrentCreator(file).create("example");
+        Assertions.assertFalse(info.files().isDirectory());
+        Assertions.assertEquals("sample.mkv", info.files().getName());
+        Assertions.assertEquals(100_000L, info.files().getRoot().getLength());
+    }
+
+    @Test
+    void pieceLength() {
+        Assertions.assertEquals(16 * 1024, TorrentCreator.pieceLength(1));
+        Assertions.assertEquals(16 * 1024 * 1024, TorrentCreator.pieceLength(Long.MAX_VALUE / 2));
+        var pieceLength = TorrentCreator.pieceLength(4L * 1024 * 1024 * 1024);
+        Assertions.assertEquals(1, Long.bitCount(pieceLength));
+
+        var creator = new TorrentCreator(Path.of("."));
+        Assertions.assertThrows(LibRuntimeException.class, () -> creator.setPieceLength(3000));
+
+        // 文件系统的根没有名称
+        var root = Path.of(".").toAbsolutePath().getRoot();
+        var exception = Assertions.assertThrows(LibRuntimeException.class, () -> new TorrentCreator(root));
+        Assertions.assertEquals("invalid source path!", exception.getMessage());
+    }
+
+    private static int indexOf(byte[] data, String text) {
+        var pattern = text.getBytes();
+        for (var i = 0; i <= data.length - pattern.length; i++) {
+            if (Arrays.equals(data, i, i + pattern.length, pattern, 0, pattern.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,79 @@
+package link.tothetracker.lib.torrent.spec;
+
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author t3link
+ */
+class TorrentRecheckTest {
+
+    @Test
+    @SneakyThrows
+    void directory(@TempDir Path temp) {
+        var root = Files.createDirectory(temp.resolve("example"));
+        Files.createDirectories(root.resolve("b/c"));
+        Files.write(root.resolve("a.bin"), TorrentCreatorTest.data(10_000));
+        var b = TorrentCreatorTest.data(30_000);
+        Files.write(root.resolve("b/b.bin"), b);
+        Files.write(root.resolve("b/c/c.bin"), TorrentCreatorTest.data(5_000));
+
+        var creator = new TorrentCreator(root);
+        creator.setPieceLength(16 * 1024);
+        var info = creator.create("example");
+
+        var result = TorrentRecheck.check(info, temp);
+        Assertions.assertEquals(3, result.pieces());
+        Assertions.assertTrue(result.complete());
+        Assertions.assertEquals(List.of("a.bin"), result.files().get(0).file().path());
+        Assertions.assertTrue(result.files().stream().allMatch(RecheckResult.FileState::complete));
+
+        // 改掉 b 中间的一个字节, 只影响第二个 piece
+        b[20_000] ^= 1;
+        Files.write(root.resolve("b/b.bin"), b);
+        result = TorrentRecheck.check(info, temp);
+        Assertions.assertFalse(result.complete());
+        Assertions.assertEquals(2, result.verified().cardinality());
+        Assertions.assertFalse(result.verified().get(1));
+        Assertions.assertTrue(result.files().get(0).complete());
+        Assertions.assertFalse(result.files().get(1).complete());
+        Assertions.assertEquals(30_000 - 16 * 1024, result.files().get(1).verified());
+        Assertions.assertTrue(result.files().get(2).complete());
+
+        // 缺失的文件不报错, 涉及到的 piece 都失败
+        Files.delete(root.resolve("b/c/c.bin"));
+        result = TorrentRecheck.check(info, temp);
+        Assertions.assertEquals(1, result.verified().cardinality());
+        Assertions.assertEquals(0L, result.files().get(2).verified());
+        Assertions.assertEquals(16 * 1024 - 10_000, result.files().get(1).verified());
+    }
+
+    @Test
+    @SneakyThrows
+    void single(@TempDir Path temp) {
+        var file = temp.resolve("sample.mkv");
+        var data = TorrentCreatorTest.data(100_000);
+        Files.write(file, data);
+        var creator = new TorrentCreator(file);
+        creator.setPieceLength(16 * 1024);
+        var info = creator.create("example");
+
+        Assertions.assertTrue(TorrentRecheck.check(info, temp).complete());
+
+        // 不完整的文件只有前面的 piece 通过
+        Files.write(file, Arrays.copyOf(data, 40_000));
+        var result = TorrentRecheck.check(info, temp);
+        Assertions.assertEquals(7, result.pieces());
+        Assertions.assertEquals(2, result.verified().cardinality());
+        Assertions.assertEquals(2 * 16 * 1024, result.files().get(0).verified());
+        Assertions.assertFalse(result.files().get(0).complete());
+    }
+
+}